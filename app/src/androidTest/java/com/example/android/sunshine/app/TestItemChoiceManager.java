@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.LinearLayoutManager;
+import android.test.AndroidTestCase;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+
+public class TestItemChoiceManager extends AndroidTestCase {
+
+    private static final int ITEM_HEIGHT = 10;
+
+    /*
+        Adapter over a plain array of ids, enough to drive the id index and the clicks.
+     */
+    static class IdAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+        long[] mIds;
+        ItemChoiceManager mICM;
+
+        IdAdapter(long[] ids) {
+            mIds = ids;
+            setHasStableIds(true);
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            View view = new View(parent.getContext());
+            view.setLayoutParams(new RecyclerView.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ITEM_HEIGHT));
+            return new RecyclerView.ViewHolder(view) {
+            };
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+            if (mICM != null) {
+                mICM.onBindViewHolder(holder, position);
+            }
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return mIds[position];
+        }
+
+        @Override
+        public int getItemCount() {
+            return mIds.length;
+        }
+    }
+
+    public void testIdPositionIndex() {
+        long[] ids = new long[1000];
+        for (int i = 0; i < ids.length; i++) {
+            // Dates a day apart, like the forecast adapter's ids
+            ids[i] = 1419033600000L + i * 86400000L;
+        }
+        ItemChoiceManager.IdPositionIndex index = new ItemChoiceManager.IdPositionIndex();
+        index.rebuild(new IdAdapter(ids), ids.length);
+
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals("Error: Wrong position for id " + ids[i], i, index.get(ids[i]));
+        }
+        assertEquals("Error: Found an id that isn't in the adapter",
+                RecyclerView.NO_POSITION, index.get(42L));
+
+        // A smaller rebuild must not see ids from the previous one
+        index.rebuild(new IdAdapter(new long[]{ids[999]}), 1);
+        assertEquals(0, index.get(ids[999]));
+        assertEquals(RecyclerView.NO_POSITION, index.get(ids[0]));
+
+        index.rebuild(new IdAdapter(new long[0]), 0);
+        assertEquals(RecyclerView.NO_POSITION, index.get(ids[999]));
+    }
+
+    public void testCheckedItemFollowsItsIdFarAway() {
+        long[] ids = new long[200];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+        IdAdapter adapter = new IdAdapter(ids);
+        RecyclerView recyclerView = layOut(adapter, 3);
+        ItemChoiceManager icm = new ItemChoiceManager(adapter);
+        adapter.mICM = icm;
+        icm.setChoiceMode(AbsListView.CHOICE_MODE_MULTIPLE);
+        icm.onClick(recyclerView.findViewHolderForAdapterPosition(0));
+        assertTrue(icm.isItemChecked(0));
+
+        // Move id 0 from the front to the very end, further than any fixed search window
+        long[] moved = new long[ids.length];
+        System.arraycopy(ids, 1, moved, 0, ids.length - 1);
+        moved[ids.length - 1] = 0;
+        adapter.mIds = moved;
+        adapter.notifyDataSetChanged();
+
+        assertFalse(icm.isItemChecked(0));
+        assertTrue("Error: Checked item was lost after moving", icm.isItemChecked(ids.length - 1));
+    }
+
+    /*
+        Every item clicked in multiple choice mode stays checked through a data set change, and
+        clicking one again unchecks it for good.
+     */
+    public void testMultipleChoiceClicksSurviveDataChange() {
+        long[] ids = {10, 11, 12, 13};
+        IdAdapter adapter = new IdAdapter(ids);
+        RecyclerView recyclerView = layOut(adapter, ids.length);
+        ItemChoiceManager icm = new ItemChoiceManager(adapter);
+        adapter.mICM = icm;
+        icm.setChoiceMode(AbsListView.CHOICE_MODE_MULTIPLE);
+
+        icm.onClick(recyclerView.findViewHolderForAdapterPosition(1));
+        icm.onClick(recyclerView.findViewHolderForAdapterPosition(2));
+        icm.onClick(recyclerView.findViewHolderForAdapterPosition(3));
+        // Toggle the last one back off
+        icm.onClick(recyclerView.findViewHolderForAdapterPosition(3));
+        assertEquals(1, icm.getSelectedItemPosition());
+
+        // Reverse the order
+        adapter.mIds = new long[]{13, 12, 11, 10};
+        adapter.notifyDataSetChanged();
+
+        assertFalse(icm.isItemChecked(0));
+        assertTrue("Error: Checked item 12 was lost", icm.isItemChecked(1));
+        assertTrue("Error: Checked item 11 was lost", icm.isItemChecked(2));
+        assertFalse("Error: Unchecked item 10 came back", icm.isItemChecked(3));
+    }
+
+    // Lays out enough of the list for the first visibleItems to have view holders
+    private RecyclerView layOut(IdAdapter adapter, int visibleItems) {
+        RecyclerView recyclerView = new RecyclerView(getContext());
+        recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        recyclerView.setAdapter(adapter);
+        recyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(100, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(visibleItems * ITEM_HEIGHT,
+                        View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, 100, visibleItems * ITEM_HEIGHT);
+        return recyclerView;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.v7.widget.RecyclerView;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.utils.PollingCheck;
+
+/*
+    Measures the time from launching MainActivity to the first forecast row being drawn.  The
+    database is seeded with a week of weather for the preferred location first, so the number
+    doesn't depend on the network.  Run it before and after a change and compare the logged times.
+ */
+public class TestStartupBenchmark extends ActivityInstrumentationTestCase2<MainActivity> {
+    public static final String LOG_TAG = TestStartupBenchmark.class.getSimpleName();
+
+    private static final long FIRST_ROW_TIMEOUT = 10000;
+    private static final int DAYS_TO_INSERT = 7;
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    private volatile long mFirstRowDrawnTime = -1;
+
+    public TestStartupBenchmark() {
+        super(MainActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        seedForecast();
+    }
+
+    private void seedForecast() {
+        Context context = getInstrumentation().getTargetContext();
+        String locationSetting = Utility.getPreferredLocation(context);
+
+        context.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+        context.getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI, null, null);
+
+        ContentValues locationValues = new ContentValues();
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, "Mountain View");
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, 37.386);
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, -122.084);
+        Uri locationUri = context.getContentResolver()
+                .insert(WeatherContract.LocationEntry.CONTENT_URI, locationValues);
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        ContentValues[] weatherValues = new ContentValues[DAYS_TO_INSERT];
+        long date = System.currentTimeMillis();
+        for (int i = 0; i < DAYS_TO_INSERT; i++, date += DAY_IN_MILLIS) {
+            ContentValues values = new ContentValues();
+            values.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationRowId);
+            values.put(WeatherContract.WeatherEntry.COLUMN_DATE, date);
+            values.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, 1.1);
+            values.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, 1.2);
+            values.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, 1.3);
+            values.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, 25 + i);
+            values.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, 15 - i);
+            values.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, "Clear");
+            values.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, 5.5);
+            values.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, 800);
+            weatherValues[i] = values;
+        }
+        context.getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, weatherValues);
+    }
+
+    public void testTimeToFirstForecastRow() throws Throwable {
+        final long start = SystemClock.uptimeMillis();
+        final MainActivity activity = getActivity();
+        final RecyclerView recyclerView =
+                (RecyclerView) activity.findViewById(R.id.recyclerview_forecast);
+        assertNotNull("Error: MainActivity has no forecast RecyclerView", recyclerView);
+
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                // The launch may already have drawn the rows by the time we get here.
+                if (hasDrawnRow(recyclerView)) {
+                    mFirstRowDrawnTime = SystemClock.uptimeMillis();
+                    return;
+                }
+                recyclerView.getViewTreeObserver().addOnPreDrawListener(
+                        new ViewTreeObserver.OnPreDrawListener() {
+                            @Override
+                            public boolean onPreDraw() {
+                                if (hasDrawnRow(recyclerView)) {
+                                    mFirstRowDrawnTime = SystemClock.uptimeMillis();
+                                    recyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+                                }
+                                return true;
+                            }
+                        });
+            }
+        });
+
+        new PollingCheck(FIRST_ROW_TIMEOUT) {
+            @Override
+            protected boolean check() {
+                return mFirstRowDrawnTime > 0;
+            }
+        }.run();
+
+        Log.i(LOG_TAG, "Time to first forecast row: " + (mFirstRowDrawnTime - start) + "ms");
+    }
+
+    private static boolean hasDrawnRow(RecyclerView recyclerView) {
+        if (recyclerView.getChildCount() == 0) {
+            return false;
+        }
+        View firstRow = recyclerView.getChildAt(0);
+        return firstRow.getWidth() > 0 && firstRow.getHeight() > 0;
+    }
+}
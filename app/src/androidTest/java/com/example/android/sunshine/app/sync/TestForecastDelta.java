@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.test.AndroidTestCase;
+
+public class TestForecastDelta extends AndroidTestCase {
+
+    private static final String HEADER = "{\"location\": \"94043\", \"start\": 1419033600000, ";
+
+    private static ForecastDelta parseDays(String days) {
+        return ForecastDelta.parse(HEADER + "\"days\": [" + days + "]}");
+    }
+
+    public void testParse() {
+        assertNotNull(parseDays("{\"offset\": 0, \"max\": 21.5, \"id\": 500, \"desc\": \"Rain\"},"
+                + "{\"offset\": 13, \"hum\": 80, \"deg\": 360}"));
+    }
+
+    public void testDuplicateOffsets() {
+        assertNull("Error: a day may only be changed once",
+                parseDays("{\"offset\": 1, \"max\": 20}, {\"offset\": 1, \"min\": 10}"));
+    }
+
+    public void testRanges() {
+        assertNull("Error: offsets start at 0", parseDays("{\"offset\": -1, \"max\": 20}"));
+        assertNull("Error: the sync only keeps two weeks",
+                parseDays("{\"offset\": 14, \"max\": 20}"));
+        assertNull(parseDays("{\"offset\": 0, \"max\": 71}"));
+        assertNull(parseDays("{\"offset\": 0, \"hum\": -1}"));
+        assertNull(parseDays("{\"offset\": 0, \"deg\": 361}"));
+        assertNull(parseDays("{\"offset\": 0, \"id\": 199}"));
+        assertNull(parseDays("{\"offset\": 0, \"id\": 1000}"));
+    }
+
+    public void testUnknownFields() {
+        assertNull("Error: unknown fields should refuse the delta",
+                parseDays("{\"offset\": 0, \"max\": 20, \"uv\": 5}"));
+    }
+
+    public void testNoOpDays() {
+        assertNull("Error: a day without changes should refuse the delta",
+                parseDays("{\"offset\": 0, \"max\": 20}, {\"offset\": 1}"));
+    }
+
+    public void testMalformed() {
+        assertNull(ForecastDelta.parse("{\"location\": \"94043\", \"days\": []}"));
+        assertNull(ForecastDelta.parse("not json"));
+        assertNull(parseDays("{\"offset\": 0, \"max\": \"warm\"}"));
+    }
+}
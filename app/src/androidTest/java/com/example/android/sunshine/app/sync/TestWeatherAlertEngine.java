@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.app.Notification;
+import android.test.AndroidTestCase;
+
+import java.util.Arrays;
+
+public class TestWeatherAlertEngine extends AndroidTestCase {
+
+    /*
+        Extreme weather and the rarer fog ids have no weather icon, yet rules fire on them.
+     */
+    public void testAlertIconWithoutConditionIcon() {
+        for (int weatherId : new int[]{900, 762}) {
+            Notification notification = WeatherAlertEngine.buildAlertNotification(getContext(),
+                    weatherId, Arrays.asList(System.currentTimeMillis()),
+                    Arrays.asList(weatherId == 900 ? "extreme" : "fog"));
+            assertTrue("Error: no small icon for " + weatherId, notification.icon > 0);
+        }
+    }
+}
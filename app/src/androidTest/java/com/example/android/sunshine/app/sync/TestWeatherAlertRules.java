@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+
+public class TestWeatherAlertRules extends AndroidTestCase {
+
+    public void testCompile() {
+        WeatherAlertRules rules = WeatherAlertRules.compile(
+                "max>30, Min < -5, wind>40, rain, bogus, max>, snow, rain", true);
+        assertEquals("Error: bad and duplicate rules should be skipped", 5, rules.size());
+    }
+
+    public void testThresholds() {
+        WeatherAlertRules rules = WeatherAlertRules.compile("max>30,max>25,max>35,min<0", true);
+        ArrayList<String> fired = new ArrayList<>();
+
+        rules.match(800, 31, 10, 5, fired);
+        assertEquals(2, fired.size());
+        assertTrue(fired.contains("max>30"));
+        assertTrue(fired.contains("max>25"));
+
+        fired.clear();
+        rules.match(800, 25, -1, 5, fired);
+        assertEquals("Error: thresholds are exclusive", 1, fired.size());
+        assertEquals("min<0", fired.get(0));
+    }
+
+    public void testImperialThresholds() {
+        // 86F is 30C and 25mph is about 40km/h
+        WeatherAlertRules rules = WeatherAlertRules.compile("max>86,wind>25", false);
+        ArrayList<String> fired = new ArrayList<>();
+
+        rules.match(800, 30.5, 20, 41, fired);
+        assertEquals(2, fired.size());
+
+        fired.clear();
+        rules.match(800, 29.5, 20, 39, fired);
+        assertTrue(fired.isEmpty());
+    }
+
+    public void testCategories() {
+        WeatherAlertRules rules = WeatherAlertRules.compile("storm,snow", true);
+        ArrayList<String> fired = new ArrayList<>();
+
+        rules.match(211, 20, 10, 5, fired);
+        assertEquals("storm", fired.get(0));
+
+        fired.clear();
+        rules.match(500, 20, 10, 5, fired);
+        assertTrue("Error: rain isn't a rule", fired.isEmpty());
+    }
+
+    /*
+        The ids whose category differs from their icon's.
+     */
+    public void testSpecialCategories() {
+        WeatherAlertRules rules = WeatherAlertRules.compile("rain,fog", true);
+        ArrayList<String> fired = new ArrayList<>();
+
+        rules.match(511, 0, -2, 5, fired);
+        assertEquals("Error: freezing rain should be rain", "rain", fired.get(0));
+
+        for (int weatherId : new int[]{762, 771, 781}) {
+            fired.clear();
+            rules.match(weatherId, 20, 10, 5, fired);
+            assertEquals("Error: " + weatherId + " should be fog", "fog", fired.get(0));
+        }
+    }
+}
@@ -22,6 +22,7 @@ import android.os.Bundle;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -30,16 +31,19 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.example.android.sunshine.app.data.WeatherContract;
 
+import java.util.ArrayList;
+
 /**
  * {@link ForecastAdapter} exposes a list of weather forecasts
  * from a {@link android.database.Cursor} to a {@link android.support.v7.widget.RecyclerView}.
  */
 public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder> {
 
-    private static final int VIEW_TYPE_TODAY = 0;
-    private static final int VIEW_TYPE_FUTURE_DAY = 1;
+    static final int VIEW_TYPE_TODAY = 0;
+    static final int VIEW_TYPE_FUTURE_DAY = 1;
 
     // Flag to determine if we want to use a separate view for "today".
     private boolean mUseTodayLayout = true;
@@ -49,6 +53,8 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
     final private ForecastAdapterOnClickHandler mClickHandler;
     final private View mEmptyView;
     final private ItemChoiceManager mICM;
+    final private SparseArray<ArrayList<ForecastAdapterViewHolder>> mPreInflatedViewHolders =
+            new SparseArray<ArrayList<ForecastAdapterViewHolder>>();
 
     /**
      * Cache of the children views for a forecast list item.
@@ -88,6 +94,9 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         mContext = context;
         mClickHandler = dh;
         mEmptyView = emptyView;
+        // Lets the ItemChoiceManager keep the selection on the same day across data changes.
+        // This has to happen before it registers its observer.
+        setHasStableIds(true);
         mICM = new ItemChoiceManager(this);
         mICM.setChoiceMode(choiceMode);
     }
@@ -103,25 +112,51 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
     @Override
     public ForecastAdapterViewHolder onCreateViewHolder(ViewGroup viewGroup, int viewType) {
         if ( viewGroup instanceof RecyclerView ) {
-            int layoutId = -1;
-            switch (viewType) {
-                case VIEW_TYPE_TODAY: {
-                    layoutId = R.layout.list_item_forecast_today;
-                    break;
-                }
-                case VIEW_TYPE_FUTURE_DAY: {
-                    layoutId = R.layout.list_item_forecast;
-                    break;
-                }
+            // Hand out a holder inflated during startup by ForecastViewHolderWarmer if we have one
+            ArrayList<ForecastAdapterViewHolder> preInflated = mPreInflatedViewHolders.get(viewType);
+            if ( null != preInflated && !preInflated.isEmpty() ) {
+                return preInflated.remove(preInflated.size() - 1);
             }
-            View view = LayoutInflater.from(viewGroup.getContext()).inflate(layoutId, viewGroup, false);
-            view.setFocusable(true);
-            return new ForecastAdapterViewHolder(view);
+            return inflateViewHolder(LayoutInflater.from(viewGroup.getContext()), viewGroup, viewType);
         } else {
             throw new RuntimeException("Not bound to RecyclerView");
         }
     }
 
+    /**
+     * Inflates a new {@link ForecastAdapterViewHolder} for the given view type.  This doesn't
+     * touch any adapter state, so it is safe to call from a background thread.
+     */
+    ForecastAdapterViewHolder inflateViewHolder(LayoutInflater inflater, ViewGroup parent, int viewType) {
+        int layoutId = -1;
+        switch (viewType) {
+            case VIEW_TYPE_TODAY: {
+                layoutId = R.layout.list_item_forecast_today;
+                break;
+            }
+            case VIEW_TYPE_FUTURE_DAY: {
+                layoutId = R.layout.list_item_forecast;
+                break;
+            }
+        }
+        View view = inflater.inflate(layoutId, parent, false);
+        view.setFocusable(true);
+        return new ForecastAdapterViewHolder(view);
+    }
+
+    /**
+     * Stores a holder inflated ahead of time, to be returned by the next call to
+     * {@link #onCreateViewHolder} for its view type.  Must be called on the UI thread.
+     */
+    void addPreInflatedViewHolder(int viewType, ForecastAdapterViewHolder viewHolder) {
+        ArrayList<ForecastAdapterViewHolder> preInflated = mPreInflatedViewHolders.get(viewType);
+        if ( null == preInflated ) {
+            preInflated = new ArrayList<ForecastAdapterViewHolder>();
+            mPreInflatedViewHolders.put(viewType, preInflated);
+        }
+        preInflated.add(viewHolder);
+    }
+
     @Override
     public void onBindViewHolder(ForecastAdapterViewHolder forecastAdapterViewHolder, int position) {
         mCursor.moveToPosition(position);
@@ -144,6 +179,8 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         } else {
             Glide.with(mContext)
                     .load(Utility.getArtUrlForWeatherCondition(mContext, weatherId))
+                    // Keeps the source too, where ForecastImagePrefetcher puts it
+                    .diskCacheStrategy(DiskCacheStrategy.ALL)
                     .error(defaultImage)
                     .crossFade()
                     .into(forecastAdapterViewHolder.mIconView);
@@ -206,6 +243,14 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         return (position == 0 && mUseTodayLayout) ? VIEW_TYPE_TODAY : VIEW_TYPE_FUTURE_DAY;
     }
 
+    @Override
+    public long getItemId(int position) {
+        // There's one row per day for a location, so the date identifies the row.  Unlike the row
+        // id, it's also the same in the cold start snapshot and in the database.
+        if ( null == mCursor || !mCursor.moveToPosition(position) ) return RecyclerView.NO_ID;
+        return mCursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+    }
+
     @Override
     public int getItemCount() {
         if ( null == mCursor ) return 0;
@@ -22,6 +22,7 @@ import android.content.SharedPreferences;
 import android.content.res.TypedArray;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
@@ -45,6 +46,7 @@ import android.view.ViewTreeObserver;
 import android.widget.AbsListView;
 import android.widget.TextView;
 
+import com.example.android.sunshine.app.data.ForecastSnapshot;
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
 
@@ -54,6 +56,8 @@ import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
 public class ForecastFragment extends Fragment implements LoaderManager.LoaderCallbacks<Cursor>, SharedPreferences.OnSharedPreferenceChangeListener {
     public static final String LOG_TAG = ForecastFragment.class.getSimpleName();
     private ForecastAdapter mForecastAdapter;
+    private ForecastImagePrefetcher mImagePrefetcher;
+    private ForecastViewHolderWarmer mViewHolderWarmer;
     private RecyclerView mRecyclerView;
     private boolean mUseTodayLayout, mAutoSelectView;
     private int mChoiceMode;
@@ -200,6 +204,10 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         // specify an adapter (see also next example)
         mRecyclerView.setAdapter(mForecastAdapter);
 
+        // Warm the image cache for the rows that are about to scroll into view
+        mImagePrefetcher = new ForecastImagePrefetcher(getActivity(), mForecastAdapter);
+        mRecyclerView.addOnScrollListener(mImagePrefetcher);
+
         final View parallaxView = rootView.findViewById(R.id.parallax_bar);
         if (null != parallaxView) {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
@@ -259,6 +267,19 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         if ( mHoldForTransition ) {
             getActivity().supportPostponeEnterTransition();
         }
+        // Inflate the first screen of rows in the background while the loader runs.  This is
+        // done here rather than in onCreateView so the activity has told us which layout to use.
+        mViewHolderWarmer = new ForecastViewHolderWarmer(mRecyclerView, mForecastAdapter);
+        mViewHolderWarmer.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        // Until the loader has opened the database and run its query, show the forecast we
+        // persisted after the last sync.  onLoadFinished swaps in the live data.
+        if ( mForecastAdapter.getItemCount() == 0 ) {
+            ForecastSnapshot snapshot = ForecastSnapshot.peek(getActivity(),
+                    Utility.getPreferredLocation(getActivity()));
+            if ( null != snapshot ) {
+                mForecastAdapter.swapCursor(snapshot.toCursor(FORECAST_COLUMNS));
+            }
+        }
         getLoaderManager().initLoader(FORECAST_LOADER, null, this);
         super.onActivityCreated(savedInstanceState);
     }
@@ -377,6 +398,12 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     @Override
     public void onDestroy() {
         super.onDestroy();
+        if (null != mImagePrefetcher) {
+            mImagePrefetcher.cancelAll();
+        }
+        if (null != mViewHolderWarmer) {
+            mViewHolderWarmer.cancel(false);
+        }
         if (null != mRecyclerView) {
             mRecyclerView.clearOnScrollListeners();
         }
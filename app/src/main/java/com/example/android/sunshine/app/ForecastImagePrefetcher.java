@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.drawable.Drawable;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.animation.GlideAnimation;
+import com.bumptech.glide.request.target.SimpleTarget;
+
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * {@link ForecastImagePrefetcher} warms Glide's disk cache for the rows that are about to scroll
+ * into view, so remote art is already downloaded by the time
+ * {@link ForecastAdapter#onBindViewHolder} asks for it.  Only the source is fetched: the adapter
+ * decodes it with the transformation and size of the view it lands in, which a prefetch can't
+ * know, and any other decode would be cached under a key the adapter never asks for.
+ * <p/>
+ * At most {@link #MAX_IN_FLIGHT} requests are outstanding at once, and all of them are cancelled
+ * as soon as the user reverses the scroll direction.
+ */
+public class ForecastImagePrefetcher extends RecyclerView.OnScrollListener {
+
+    // How many rows past the last visible one we try to have ready.
+    private static final int PREFETCH_DISTANCE = 6;
+
+    // Upper bound on concurrent prefetch requests, so we never starve the visible rows.
+    private static final int MAX_IN_FLIGHT = 4;
+
+    private static final int DIRECTION_NONE = 0;
+    private static final int DIRECTION_DOWN = 1;
+    private static final int DIRECTION_UP = -1;
+
+    final private Context mContext;
+    final private ForecastAdapter mAdapter;
+
+    private final ArrayList<PrefetchTarget> mInFlight = new ArrayList<PrefetchTarget>(MAX_IN_FLIGHT);
+    private int mDirection = DIRECTION_NONE;
+    // The next adapter position to prefetch in the current direction.
+    private int mNextPosition = RecyclerView.NO_POSITION;
+
+    public ForecastImagePrefetcher(Context context, ForecastAdapter adapter) {
+        mContext = context;
+        mAdapter = adapter;
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        if (dy == 0 || Utility.usingLocalGraphics(mContext)) {
+            return;
+        }
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (!(layoutManager instanceof LinearLayoutManager)) {
+            return;
+        }
+        LinearLayoutManager llm = (LinearLayoutManager) layoutManager;
+
+        int direction = dy > 0 ? DIRECTION_DOWN : DIRECTION_UP;
+        if (direction != mDirection) {
+            // Whatever we were fetching is now behind the user.
+            cancelAll();
+            mDirection = direction;
+            mNextPosition = RecyclerView.NO_POSITION;
+        }
+
+        int edge = direction == DIRECTION_DOWN
+                ? llm.findLastVisibleItemPosition()
+                : llm.findFirstVisibleItemPosition();
+        if (edge == RecyclerView.NO_POSITION) {
+            return;
+        }
+
+        // Never prefetch something that is already on screen.
+        int first = edge + direction;
+        if (mNextPosition == RecyclerView.NO_POSITION
+                || (direction == DIRECTION_DOWN && mNextPosition < first)
+                || (direction == DIRECTION_UP && mNextPosition > first)) {
+            mNextPosition = first;
+        }
+        int limit = edge + direction * PREFETCH_DISTANCE;
+        int count = mAdapter.getItemCount();
+
+        while (mInFlight.size() < MAX_IN_FLIGHT
+                && mNextPosition >= 0 && mNextPosition < count
+                && (direction == DIRECTION_DOWN ? mNextPosition <= limit : mNextPosition >= limit)) {
+            prefetch(mNextPosition);
+            mNextPosition += direction;
+        }
+    }
+
+    /**
+     * Cancels every outstanding prefetch request. Safe to call at any time.
+     */
+    public void cancelAll() {
+        for (int i = mInFlight.size() - 1; i >= 0; i--) {
+            Glide.clear(mInFlight.get(i));
+        }
+        mInFlight.clear();
+    }
+
+    private void prefetch(int position) {
+        Cursor cursor = mAdapter.getCursor();
+        if (null == cursor || !cursor.moveToPosition(position)) {
+            return;
+        }
+        int weatherId = cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+        String artUrl = Utility.getArtUrlForWeatherCondition(mContext, weatherId);
+        if (null == artUrl) {
+            return;
+        }
+        PrefetchTarget target = new PrefetchTarget();
+        mInFlight.add(target);
+        // Caches the source, which the adapter's DiskCacheStrategy.ALL load reads back
+        Glide.with(mContext)
+                .load(artUrl)
+                .downloadOnly(target);
+    }
+
+    /**
+     * Target that only exists to pull the image into the caches. It releases its slot in the
+     * in-flight budget whether the load succeeds or fails.
+     */
+    private class PrefetchTarget extends SimpleTarget<File> {
+        @Override
+        public void onResourceReady(File resource, GlideAnimation<? super File> glideAnimation) {
+            mInFlight.remove(this);
+        }
+
+        @Override
+        public void onLoadFailed(Exception e, Drawable errorDrawable) {
+            mInFlight.remove(this);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.os.AsyncTask;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.LayoutInflater;
+
+import java.util.ArrayList;
+
+/**
+ * {@link ForecastViewHolderWarmer} inflates the forecast rows we expect to need for the first
+ * screen on a background thread while the loader is still querying the database, then seeds the
+ * {@link RecyclerView}'s recycled view pool with them.  The first layout after the data arrives
+ * only has to bind, not inflate.
+ */
+public class ForecastViewHolderWarmer
+        extends AsyncTask<Void, Void, ArrayList<ForecastAdapter.ForecastAdapterViewHolder>> {
+    private static final String LOG_TAG = ForecastViewHolderWarmer.class.getSimpleName();
+
+    // A couple of rows beyond the screen so the first fling doesn't inflate either.
+    private static final int EXTRA_ROWS = 2;
+
+    private final RecyclerView mRecyclerView;
+    private final ForecastAdapter mAdapter;
+    private final LayoutInflater mInflater;
+    private final boolean mUseTodayLayout;
+    private final int mFutureDayCount;
+
+    public ForecastViewHolderWarmer(RecyclerView recyclerView, ForecastAdapter adapter) {
+        mRecyclerView = recyclerView;
+        mAdapter = adapter;
+        Context context = recyclerView.getContext();
+        mInflater = LayoutInflater.from(context).cloneInContext(context);
+        mUseTodayLayout = adapter.getItemViewType(0) == ForecastAdapter.VIEW_TYPE_TODAY;
+        mFutureDayCount = getExpectedRowCount(context);
+    }
+
+    @Override
+    protected ArrayList<ForecastAdapter.ForecastAdapterViewHolder> doInBackground(Void... params) {
+        long start = System.nanoTime();
+        ArrayList<ForecastAdapter.ForecastAdapterViewHolder> holders =
+                new ArrayList<ForecastAdapter.ForecastAdapterViewHolder>(mFutureDayCount + 1);
+        // The views aren't attached to anything yet, so inflating them here is safe.
+        if (mUseTodayLayout) {
+            holders.add(mAdapter.inflateViewHolder(mInflater, mRecyclerView,
+                    ForecastAdapter.VIEW_TYPE_TODAY));
+        }
+        for (int i = 0; i < mFutureDayCount && !isCancelled(); i++) {
+            holders.add(mAdapter.inflateViewHolder(mInflater, mRecyclerView,
+                    ForecastAdapter.VIEW_TYPE_FUTURE_DAY));
+        }
+        Log.d(LOG_TAG, "Pre-inflated " + holders.size() + " rows in "
+                + (System.nanoTime() - start) / 1000000 + "ms");
+        return holders;
+    }
+
+    @Override
+    protected void onPostExecute(ArrayList<ForecastAdapter.ForecastAdapterViewHolder> holders) {
+        RecyclerView.RecycledViewPool pool = mRecyclerView.getRecycledViewPool();
+        // The default pool only keeps five holders of each type.
+        pool.setMaxRecycledViews(ForecastAdapter.VIEW_TYPE_FUTURE_DAY, mFutureDayCount);
+        for (int i = 0; i < holders.size(); i++) {
+            // doInBackground puts the "today" holder first, when there is one.
+            int viewType = (i == 0 && mUseTodayLayout)
+                    ? ForecastAdapter.VIEW_TYPE_TODAY : ForecastAdapter.VIEW_TYPE_FUTURE_DAY;
+            ForecastAdapter.ForecastAdapterViewHolder holder = holders.get(i);
+            // createViewHolder hands back the holder we just stored and stamps its view type,
+            // which the pool needs in order to file it correctly.
+            mAdapter.addPreInflatedViewHolder(viewType, holder);
+            pool.putRecycledView(mAdapter.createViewHolder(mRecyclerView, viewType));
+        }
+    }
+
+    /**
+     * Estimates how many future day rows fit on one screen.
+     */
+    private static int getExpectedRowCount(Context context) {
+        TypedArray a = context.obtainStyledAttributes(
+                new int[]{android.R.attr.listPreferredItemHeight});
+        int rowHeight = a.getDimensionPixelSize(0, 0);
+        a.recycle();
+        if (rowHeight <= 0) {
+            return EXTRA_ROWS;
+        }
+        int screenHeight = context.getResources().getDisplayMetrics().heightPixels;
+        return screenHeight / rowHeight + EXTRA_ROWS;
+    }
+}
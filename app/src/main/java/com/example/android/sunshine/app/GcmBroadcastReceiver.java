@@ -24,6 +24,7 @@ import android.os.Bundle;
 import android.support.v4.app.NotificationCompat;
 import android.util.Log;
 
+import com.example.android.sunshine.app.sync.ForecastDeltaService;
 import com.google.android.gms.gcm.GoogleCloudMessaging;
 
 public class GcmBroadcastReceiver extends BroadcastReceiver {
@@ -32,6 +33,7 @@ public class GcmBroadcastReceiver extends BroadcastReceiver {
     private static final String EXTRA_SENDER = "from";
     private static final String EXTRA_WEATHER = "weather";
     private static final String EXTRA_LOCATION = "location";
+    private static final String EXTRA_FORECAST_DELTA = "forecast_delta";
 
     public static final int NOTIFICATION_ID = 1;
     private NotificationManager mNotificationManager;
@@ -56,12 +58,19 @@ public class GcmBroadcastReceiver extends BroadcastReceiver {
             if (GoogleCloudMessaging.MESSAGE_TYPE_MESSAGE.equals(messageType)) {
                 // Is this our message?? Better be if you're going to act on it!
                 if (MainActivity.PROJECT_NUMBER.equals(extras.getString(EXTRA_SENDER))) {
+                    String forecastDelta = extras.getString(EXTRA_FORECAST_DELTA);
+                    if (forecastDelta != null) {
+                        applyForecastDelta(context, forecastDelta);
+                    }
+
                     // Process message and then post a notification of the received message.
                     String weather = extras.getString(EXTRA_WEATHER);
                     String location = extras.getString(EXTRA_LOCATION);
-                    String alert = "Heads up: " + weather + " in " + location + "!";
+                    if (weather != null && location != null) {
+                        String alert = "Heads up: " + weather + " in " + location + "!";
 
-                    sendNotification(context, alert);
+                        sendNotification(context, alert);
+                    }
                 }
 
                 Log.i(LOG_TAG, "Received: " + extras.toString());
@@ -69,6 +78,13 @@ public class GcmBroadcastReceiver extends BroadcastReceiver {
         }
     }
 
+    // Apply pushed forecast changes to the database without a round-trip to the weather API.
+    // Along with the alerts and the watch face that takes longer than a receiver may run, so
+    // a service does it.
+    private void applyForecastDelta(Context context, String forecastDelta) {
+        ForecastDeltaService.startApply(context, forecastDelta);
+    }
+
     // Put the message into a notification and post it.
     // This is just one simple example of what you might choose to do with a GCM message.
     private void sendNotification(Context context, String msg) {
@@ -27,9 +27,12 @@ import android.util.SparseBooleanArray;
 import android.widget.AbsListView;
 import android.widget.Checkable;
 
+import java.util.Arrays;
+
 /**
  * The ItemChoiceManager class keeps track of which positions have been selected.  Note that it
- * doesn't take advantage of new adapter features to track changes in the underlying data.
+ * doesn't take advantage of new adapter features to track changes in the underlying data; when
+ * the adapter has stable ids, checked items are re-found by id after every data set change.
  */
 public class ItemChoiceManager {
     private final String LOG_TAG = MainActivity.class.getSimpleName();
@@ -53,14 +56,14 @@ public class ItemChoiceManager {
 
     public ItemChoiceManager(RecyclerView.Adapter adapter) {
         mAdapter = adapter;
+        mAdapter.registerAdapterDataObserver(mAdapterDataObserver);
     }
 
     /**
-     * How many positions in either direction we will search to try to
-     * find a checked item with a stable ID that moved position across
-     * a data set change. If the item isn't found it will be unselected.
+     * Index from stable id to adapter position, rebuilt once per data set change so checked ids
+     * can be found again no matter how far they moved.
      */
-    private static final int CHECK_POSITION_SEARCH_DISTANCE = 20;
+    private final IdPositionIndex mIdIndex = new IdPositionIndex();
 
     /**
      * Running state of which positions are currently checked
@@ -108,7 +111,14 @@ public class ItemChoiceManager {
             }
             case AbsListView.CHOICE_MODE_MULTIPLE: {
                 boolean checked = mCheckStates.get(position, false);
-                mCheckStates.put(position, !checked);
+                // Keep the ids in step, they are what the checks are re-found by after a change
+                if (checked) {
+                    mCheckStates.delete(position);
+                    mCheckedIdStates.delete(mAdapter.getItemId(position));
+                } else {
+                    mCheckStates.put(position, true);
+                    mCheckedIdStates.put(mAdapter.getItemId(position), position);
+                }
                 // We directly call onBindViewHolder here because notifying that an item has
                 // changed on an item that has the focus causes it to lose focus, which makes
                 // keyboard navigation a bit annoying
@@ -154,36 +164,24 @@ public class ItemChoiceManager {
         mCheckedIdStates.clear();
     }
 
-    void confirmCheckedPositionsById(int oldItemCount) {
+    void confirmCheckedPositionsById(int itemCount) {
         // Clear out the positional check states, we'll rebuild it below from IDs.
         mCheckStates.clear();
+        if (mCheckedIdStates.size() == 0) {
+            return;
+        }
 
+        mIdIndex.rebuild(mAdapter, itemCount);
         for (int checkedIndex = 0; checkedIndex < mCheckedIdStates.size(); checkedIndex++) {
             final long id = mCheckedIdStates.keyAt(checkedIndex);
-            final int lastPos = mCheckedIdStates.valueAt(checkedIndex);
-
-            final long lastPosId = mAdapter.getItemId(lastPos);
-            if (id != lastPosId) {
-                // Look around to see if the ID is nearby. If not, uncheck it.
-                final int start = Math.max(0, lastPos - CHECK_POSITION_SEARCH_DISTANCE);
-                final int end = Math.min(lastPos + CHECK_POSITION_SEARCH_DISTANCE, oldItemCount);
-                boolean found = false;
-                for (int searchPos = start; searchPos < end; searchPos++) {
-                    final long searchId = mAdapter.getItemId(searchPos);
-                    if (id == searchId) {
-                        found = true;
-                        mCheckStates.put(searchPos, true);
-                        mCheckedIdStates.setValueAt(checkedIndex, searchPos);
-                        break;
-                    }
-                }
-
-                if (!found) {
-                    mCheckedIdStates.delete(id);
-                    checkedIndex--;
-                }
+            final int position = mIdIndex.get(id);
+            if (position == RecyclerView.NO_POSITION) {
+                // The item is gone from the data set, so it can't be checked anymore.
+                mCheckedIdStates.removeAt(checkedIndex);
+                checkedIndex--;
             } else {
-                mCheckStates.put(lastPos, true);
+                mCheckStates.put(position, true);
+                mCheckedIdStates.setValueAt(checkedIndex, position);
             }
         }
     }
@@ -234,4 +232,67 @@ public class ItemChoiceManager {
             return mCheckStates.keyAt(0);
         }
     }
+
+    /**
+     * Open-addressing hash map from item id to adapter position, kept in primitive arrays that
+     * are reused between rebuilds.
+     */
+    static class IdPositionIndex {
+        private long[] mIds = new long[0];
+        private int[] mPositions = new int[0];
+        // mPositions holds position + 1, so that 0 marks an empty slot
+        private int mMask;
+
+        void rebuild(RecyclerView.Adapter adapter, int itemCount) {
+            int capacity = 1;
+            // keep the load factor at or below one half
+            while (capacity < itemCount * 2) {
+                capacity <<= 1;
+            }
+            if (mIds.length < capacity) {
+                mIds = new long[capacity];
+                mPositions = new int[capacity];
+            } else {
+                capacity = mIds.length;
+                Arrays.fill(mPositions, 0);
+            }
+            mMask = capacity - 1;
+
+            for (int position = 0; position < itemCount; position++) {
+                long id = adapter.getItemId(position);
+                int slot = hash(id) & mMask;
+                while (mPositions[slot] != 0 && mIds[slot] != id) {
+                    slot = (slot + 1) & mMask;
+                }
+                if (mPositions[slot] == 0) {
+                    mIds[slot] = id;
+                    mPositions[slot] = position + 1;
+                }
+            }
+        }
+
+        /**
+         * @return the position of the first item with this id, or
+         * {@link RecyclerView#NO_POSITION} if there is none.
+         */
+        int get(long id) {
+            if (mPositions.length == 0) {
+                return RecyclerView.NO_POSITION;
+            }
+            int slot = hash(id) & mMask;
+            while (mPositions[slot] != 0) {
+                if (mIds[slot] == id) {
+                    return mPositions[slot] - 1;
+                }
+                slot = (slot + 1) & mMask;
+            }
+            return RecyclerView.NO_POSITION;
+        }
+
+        private static int hash(long id) {
+            // Mix the bits; ids are often small sequential row numbers.
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
 }
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.v4.util.AtomicFile;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.request.FutureTarget;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Weather art decoded once at the size it is drawn, for the widgets and the notification.
+ * Bitmaps are kept in a memory-budgeted LRU and persisted on disk, so filling a widget list costs
+ * a map lookup per row, {@link android.widget.RemoteViews} only carry icon-sized bitmaps and the
+ * notification never has to wait for the network.
+ * <p/>
+ * Entries are keyed by art URL and size.  The art URL already identifies both the art pack and
+ * the condition, so every weather id that shares a picture shares an entry, and switching packs
+ * simply misses.  On disk the URL is hashed with SHA-1, so two URLs never share a file.
+ */
+public class WeatherArtCache {
+    private static final String LOG_TAG = WeatherArtCache.class.getSimpleName();
+
+    private static final String CACHE_DIR = "weather_art";
+    // Where the widgets kept their art before the notification shared it
+    private static final String LEGACY_CACHE_DIR = "widget_art";
+
+    // The in-memory cache may use this fraction of the heap.
+    private static final int MEMORY_FRACTION = 32;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static WeatherArtCache sInstance;
+
+    private final Context mContext;
+    private final File mDir;
+    private final LruCache<String, Bitmap> mMemoryCache;
+
+    public static synchronized WeatherArtCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WeatherArtCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private WeatherArtCache(Context context) {
+        mContext = context;
+        mDir = new File(context.getCacheDir(), CACHE_DIR);
+        int budget = (int) (Runtime.getRuntime().maxMemory() / MEMORY_FRACTION);
+        mMemoryCache = new LruCache<String, Bitmap>(budget) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Returns the art at {@code artUrl} scaled to fit a {@code size} x {@code size} square,
+     * fetching and decoding it only if neither the memory nor the disk cache has it.  Must not be
+     * called on the UI thread.
+     *
+     * @return the bitmap, or null if it could not be loaded.
+     */
+    public Bitmap getArt(String artUrl, int size) {
+        return getArt(artUrl, size, 0);
+    }
+
+    /**
+     * Like {@link #getArt(String, int)}, but gives up on the download after {@code timeoutMs}
+     * milliseconds.  A timeout of 0 waits for as long as the download takes.
+     */
+    public Bitmap getArt(String artUrl, int size, long timeoutMs) {
+        Bitmap bitmap = peekArt(artUrl, size);
+        if (bitmap != null) {
+            return bitmap;
+        }
+
+        FutureTarget<Bitmap> future = Glide.with(mContext)
+                .load(artUrl)
+                .asBitmap()
+                .diskCacheStrategy(DiskCacheStrategy.SOURCE)
+                .fitCenter()
+                .into(size, size);
+        try {
+            Bitmap loaded = timeoutMs > 0
+                    ? future.get(timeoutMs, TimeUnit.MILLISECONDS)
+                    : future.get();
+            // Glide may recycle the bitmap it hands back once it is evicted from its own
+            // caches, so keep a copy we own.
+            bitmap = loaded.copy(loaded.getConfig() != null
+                    ? loaded.getConfig() : Bitmap.Config.ARGB_8888, false);
+        } catch (TimeoutException e) {
+            Log.w(LOG_TAG, "Gave up retrieving art from " + artUrl + " after " + timeoutMs + "ms");
+            future.cancel(true);
+            return null;
+        } catch (InterruptedException | ExecutionException e) {
+            Log.e(LOG_TAG, "Error retrieving art from " + artUrl, e);
+            return null;
+        }
+        if (bitmap == null) {
+            return null;
+        }
+        String key = getKey(artUrl, size);
+        writeToDisk(new AtomicFile(new File(mDir, key + ".png")), bitmap);
+        mMemoryCache.put(key, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Returns the art only if it is already cached, in memory or on disk.  Never touches the
+     * network.
+     *
+     * @return the bitmap, or null if it isn't cached at this size.
+     */
+    public Bitmap peekArt(String artUrl, int size) {
+        String key = getKey(artUrl, size);
+        Bitmap bitmap = mMemoryCache.get(key);
+        if (bitmap == null) {
+            File file = new AtomicFile(new File(mDir, key + ".png")).getBaseFile();
+            bitmap = BitmapFactory.decodeFile(file.getPath());
+            if (bitmap != null) {
+                mMemoryCache.put(key, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    private void writeToDisk(AtomicFile file, Bitmap bitmap) {
+        if (!mDir.isDirectory()) {
+            if (!mDir.mkdirs()) {
+                Log.e(LOG_TAG, "Could not create " + mDir);
+                return;
+            }
+            deleteLegacyCache();
+        }
+        FileOutputStream fos = null;
+        try {
+            fos = file.startWrite();
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, fos);
+            file.finishWrite(fos);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error writing art", e);
+            if (fos != null) {
+                file.failWrite(fos);
+            }
+        }
+    }
+
+    // Nothing reads the old directory anymore, so its files would otherwise stay forever.
+    private void deleteLegacyCache() {
+        File legacyDir = new File(mContext.getCacheDir(), LEGACY_CACHE_DIR);
+        File[] files = legacyDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.delete()) {
+                Log.w(LOG_TAG, "Could not delete " + file);
+            }
+        }
+        if (!legacyDir.delete()) {
+            Log.w(LOG_TAG, "Could not delete " + legacyDir);
+        }
+    }
+
+    private static String getKey(String artUrl, int size) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(artUrl.getBytes("UTF-8"));
+            StringBuilder key = new StringBuilder(digest.length * 2 + 8);
+            for (byte b : digest) {
+                key.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+            }
+            return key.append('_').append(size).toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            // Every Android device has both
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.support.v4.util.AtomicFile;
+import android.util.Log;
+
+import com.example.android.sunshine.app.Utility;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * An immutable copy of the forecast for the preferred location, published by the sync adapter
+ * after every successful sync.  It is kept in memory and persisted to a small file, so that
+ * <ul>
+ * <li>the forecast list can be drawn on a cold start with a single small file read, before the
+ * database has even been opened, and</li>
+ * <li>the widgets, the wear watch face, the notification and Muzei all read today's weather from
+ * here instead of each querying the provider.</li>
+ * </ul>
+ */
+public class ForecastSnapshot {
+    private static final String LOG_TAG = ForecastSnapshot.class.getSimpleName();
+
+    private static final String FILE_NAME = "forecast_snapshot.bin";
+
+    // Bump this whenever the layout below changes; older files are then ignored.
+    private static final int VERSION = 1;
+
+    private static final String[] SNAPSHOT_COLUMNS = {
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.LocationEntry.COLUMN_COORD_LAT,
+            WeatherContract.LocationEntry.COLUMN_COORD_LONG
+    };
+    // these indices must match the projection
+    private static final int INDEX_DATE = 0;
+    private static final int INDEX_WEATHER_ID = 1;
+    private static final int INDEX_MAX_TEMP = 2;
+    private static final int INDEX_MIN_TEMP = 3;
+    private static final int INDEX_SHORT_DESC = 4;
+    private static final int INDEX_COORD_LAT = 5;
+    private static final int INDEX_COORD_LONG = 6;
+
+    // The most recently published or loaded snapshot, shared by everything in this process
+    private static volatile ForecastSnapshot sCurrent;
+
+    private final String mLocationSetting;
+    private final double mLat;
+    private final double mLon;
+    // One entry per day, in date order
+    private final long[] mDates;
+    private final int[] mWeatherIds;
+    private final double[] mMaxTemps;
+    private final double[] mMinTemps;
+    private final String[] mDescriptions;
+
+    private ForecastSnapshot(String locationSetting, double lat, double lon, int count) {
+        mLocationSetting = locationSetting;
+        mLat = lat;
+        mLon = lon;
+        mDates = new long[count];
+        mWeatherIds = new int[count];
+        mMaxTemps = new double[count];
+        mMinTemps = new double[count];
+        mDescriptions = new String[count];
+    }
+
+    /**
+     * Publishes the given weather rows as the snapshot for {@code locationSetting}.  Rows are
+     * expected in date order, as the sync adapter builds them.  Must not be called on the UI
+     * thread.
+     */
+    public static void publish(Context context, String locationSetting, double lat, double lon,
+                               ContentValues[] weatherValues) {
+        ForecastSnapshot snapshot = new ForecastSnapshot(locationSetting, lat, lon,
+                weatherValues.length);
+        for (int i = 0; i < weatherValues.length; i++) {
+            ContentValues values = weatherValues[i];
+            snapshot.mDates[i] = WeatherContract.normalizeDate(
+                    values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE));
+            snapshot.mWeatherIds[i] = values.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID);
+            snapshot.mMaxTemps[i] = values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP);
+            snapshot.mMinTemps[i] = values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP);
+            snapshot.mDescriptions[i] = values.getAsString(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC);
+        }
+        sCurrent = snapshot;
+        snapshot.persist(context);
+    }
+
+    /**
+     * Returns the snapshot for {@code locationSetting} if it is in memory or on disk.  This never
+     * touches the database, so it is cheap enough for the UI thread on a cold start.
+     *
+     * @return the snapshot, or null if there is none for this location.
+     */
+    public static ForecastSnapshot peek(Context context, String locationSetting) {
+        ForecastSnapshot snapshot = sCurrent;
+        if (snapshot == null || !snapshot.mLocationSetting.equals(locationSetting)) {
+            snapshot = load(context);
+            if (snapshot == null || !snapshot.mLocationSetting.equals(locationSetting)) {
+                return null;
+            }
+            sCurrent = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the snapshot for the preferred location.  If no sync has published one yet (e.g.
+     * right after an upgrade), it is built once from the provider and persisted.  Must not be
+     * called on the UI thread.
+     *
+     * @return the snapshot, or null if there is no weather for the preferred location at all.
+     */
+    public static ForecastSnapshot get(Context context) {
+        ForecastSnapshot snapshot = peek(context, Utility.getPreferredLocation(context));
+        if (snapshot == null) {
+            snapshot = reload(context);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Rebuilds the snapshot for the preferred location from the provider, for when the database
+     * was changed by something other than a full sync.  Must not be called on the UI thread.
+     *
+     * @return the snapshot, or null if there is no weather for the preferred location at all.
+     */
+    public static ForecastSnapshot reload(Context context) {
+        ForecastSnapshot snapshot = query(context, Utility.getPreferredLocation(context));
+        if (snapshot != null) {
+            sCurrent = snapshot;
+            snapshot.persist(context);
+        }
+        return snapshot;
+    }
+
+    public String getLocationSetting() {
+        return mLocationSetting;
+    }
+
+    /**
+     * @return the index of today's forecast, or -1 if the snapshot has nothing from today on.
+     */
+    public int getTodayIndex() {
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        for (int i = 0; i < mDates.length; i++) {
+            if (mDates[i] >= today) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getCount() {
+        return mDates.length;
+    }
+
+    public long getDate(int index) {
+        return mDates[index];
+    }
+
+    public int getWeatherId(int index) {
+        return mWeatherIds[index];
+    }
+
+    public double getMaxTemp(int index) {
+        return mMaxTemps[index];
+    }
+
+    public double getMinTemp(int index) {
+        return mMinTemps[index];
+    }
+
+    public String getDescription(int index) {
+        return mDescriptions[index];
+    }
+
+    /**
+     * Returns the days from today on as a cursor with the given projection, which may use any of
+     * the weather and location columns the snapshot keeps.
+     */
+    public Cursor toCursor(String[] projection) {
+        int first = getTodayIndex();
+        if (first < 0) {
+            first = mDates.length;
+        }
+        MatrixCursor cursor = new MatrixCursor(projection, mDates.length - first);
+        Object[] row = new Object[projection.length];
+        for (int i = first; i < mDates.length; i++) {
+            for (int c = 0; c < projection.length; c++) {
+                row[c] = getColumnValue(projection[c], i);
+            }
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    private Object getColumnValue(String column, int index) {
+        // Projections may qualify a column with its table name, e.g. "weather._id"
+        int dot = column.lastIndexOf('.');
+        if (dot >= 0) {
+            column = column.substring(dot + 1);
+        }
+        switch (column) {
+            case WeatherContract.WeatherEntry._ID:
+                // We don't know the row ids, but dates are unique per location.
+                return mDates[index];
+            case WeatherContract.WeatherEntry.COLUMN_DATE:
+                return mDates[index];
+            case WeatherContract.WeatherEntry.COLUMN_WEATHER_ID:
+                return mWeatherIds[index];
+            case WeatherContract.WeatherEntry.COLUMN_MAX_TEMP:
+                return mMaxTemps[index];
+            case WeatherContract.WeatherEntry.COLUMN_MIN_TEMP:
+                return mMinTemps[index];
+            case WeatherContract.WeatherEntry.COLUMN_SHORT_DESC:
+                return mDescriptions[index];
+            case WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING:
+                return mLocationSetting;
+            case WeatherContract.LocationEntry.COLUMN_COORD_LAT:
+                return mLat;
+            case WeatherContract.LocationEntry.COLUMN_COORD_LONG:
+                return mLon;
+            default:
+                throw new IllegalArgumentException("Column not kept in snapshot: " + column);
+        }
+    }
+
+    private void persist(Context context) {
+        int count = mDates.length;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + count * 48);
+        DataOutputStream out = new DataOutputStream(bytes);
+        AtomicFile file = getFile(context);
+        FileOutputStream fos = null;
+        try {
+            out.writeInt(VERSION);
+            out.writeUTF(mLocationSetting);
+            out.writeDouble(mLat);
+            out.writeDouble(mLon);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(mDates[i]);
+                out.writeInt(mWeatherIds[i]);
+                out.writeDouble(mMaxTemps[i]);
+                out.writeDouble(mMinTemps[i]);
+                out.writeUTF(mDescriptions[i]);
+            }
+            out.flush();
+
+            fos = file.startWrite();
+            fos.write(bytes.toByteArray());
+            file.finishWrite(fos);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error writing forecast snapshot", e);
+            if (fos != null) {
+                file.failWrite(fos);
+            }
+        }
+    }
+
+    private static ForecastSnapshot load(Context context) {
+        byte[] data;
+        try {
+            data = getFile(context).readFully();
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error reading forecast snapshot", e);
+            return null;
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        try {
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            String locationSetting = in.readUTF();
+            double lat = in.readDouble();
+            double lon = in.readDouble();
+            int count = in.readInt();
+            ForecastSnapshot snapshot = new ForecastSnapshot(locationSetting, lat, lon, count);
+            for (int i = 0; i < count; i++) {
+                snapshot.mDates[i] = in.readLong();
+                snapshot.mWeatherIds[i] = in.readInt();
+                snapshot.mMaxTemps[i] = in.readDouble();
+                snapshot.mMinTemps[i] = in.readDouble();
+                snapshot.mDescriptions[i] = in.readUTF();
+            }
+            return snapshot;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Corrupt forecast snapshot", e);
+            return null;
+        }
+    }
+
+    private static ForecastSnapshot query(Context context, String locationSetting) {
+        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocation(locationSetting);
+        Cursor cursor = context.getContentResolver().query(weatherForLocationUri, SNAPSHOT_COLUMNS,
+                null, null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            ForecastSnapshot snapshot = new ForecastSnapshot(locationSetting,
+                    cursor.getDouble(INDEX_COORD_LAT), cursor.getDouble(INDEX_COORD_LONG),
+                    cursor.getCount());
+            int i = 0;
+            do {
+                snapshot.mDates[i] = cursor.getLong(INDEX_DATE);
+                snapshot.mWeatherIds[i] = cursor.getInt(INDEX_WEATHER_ID);
+                snapshot.mMaxTemps[i] = cursor.getDouble(INDEX_MAX_TEMP);
+                snapshot.mMinTemps[i] = cursor.getDouble(INDEX_MIN_TEMP);
+                snapshot.mDescriptions[i] = cursor.getString(INDEX_SHORT_DESC);
+                i++;
+            } while (cursor.moveToNext());
+            return snapshot;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static AtomicFile getFile(Context context) {
+        return new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+}
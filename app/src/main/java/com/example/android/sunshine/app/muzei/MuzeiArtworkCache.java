@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.muzei;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.net.Uri;
+import android.support.v4.content.FileProvider;
+import android.support.v4.util.AtomicFile;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Local copies of the Muzei condition images, downsampled to the screen so Muzei doesn't have to
+ * fetch and decode the multi-megabyte originals every time the wallpaper changes.  The images
+ * are stored under the app's files dir and handed to Muzei through a {@link FileProvider} URI.
+ */
+class MuzeiArtworkCache {
+    private static final String LOG_TAG = MuzeiArtworkCache.class.getSimpleName();
+
+    private static final String ARTWORK_DIR = "muzei_artwork";
+
+    // One weather id for each distinct image in Utility.getImageUrlForWeatherCondition
+    private static final int[] BUCKET_WEATHER_IDS = {200, 300, 500, 600, 701, 781, 800, 801, 802};
+
+    private static final int CONNECT_TIMEOUT_MS = 15 * 1000;
+    private static final int JPEG_QUALITY = 90;
+
+    private final Context mContext;
+    private final File mDir;
+
+    MuzeiArtworkCache(Context context) {
+        mContext = context;
+        mDir = new File(context.getFilesDir(), ARTWORK_DIR);
+    }
+
+    /**
+     * @return a key naming the image shown for {@code weatherId}, shared by every weather id that
+     * shows the same image, or null if there is no image for it.
+     */
+    static String getBucket(int weatherId) {
+        String imageUrl = Utility.getImageUrlForWeatherCondition(weatherId);
+        if (imageUrl == null) {
+            return null;
+        }
+        return Integer.toHexString(imageUrl.hashCode());
+    }
+
+    /**
+     * @return the content URI of the cached image for {@code weatherId}, or null if it hasn't
+     * been downloaded yet.
+     */
+    Uri getCachedImageUri(int weatherId) {
+        String bucket = getBucket(weatherId);
+        if (bucket == null) {
+            return null;
+        }
+        File file = getFile(bucket);
+        if (!file.exists()) {
+            return null;
+        }
+        return FileProvider.getUriForFile(mContext,
+                mContext.getString(R.string.muzei_artwork_authority), file);
+    }
+
+    /**
+     * Downloads and downsamples every condition image that isn't cached yet, but only while the
+     * active network is unmetered.  Must not be called on the UI thread.
+     */
+    void prefetchIfUnmetered() {
+        for (int weatherId : BUCKET_WEATHER_IDS) {
+            if (!cacheIfUnmetered(weatherId)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Downloads and downsamples the image for {@code weatherId} if it isn't cached yet and the
+     * active network is unmetered.  Must not be called on the UI thread.
+     *
+     * @return false if nothing could be downloaded because the network is metered or down.
+     */
+    boolean cacheIfUnmetered(int weatherId) {
+        String bucket = getBucket(weatherId);
+        if (bucket == null || getFile(bucket).exists()) {
+            return true;
+        }
+        if (!isOnUnmeteredNetwork()) {
+            return false;
+        }
+        download(Utility.getImageUrlForWeatherCondition(weatherId), bucket);
+        return true;
+    }
+
+    private boolean isOnUnmeteredNetwork() {
+        ConnectivityManager cm =
+                (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
+        return activeNetwork != null && activeNetwork.isConnected() && !cm.isActiveNetworkMetered();
+    }
+
+    private void download(String imageUrl, String bucket) {
+        // The original goes to a temporary file so it never has to be decoded at full size
+        File original = new File(mContext.getCacheDir(), bucket + ".download");
+        HttpURLConnection urlConnection = null;
+        InputStream in = null;
+        OutputStream out = null;
+        try {
+            urlConnection = (HttpURLConnection) new URL(imageUrl).openConnection();
+            urlConnection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            urlConnection.setReadTimeout(CONNECT_TIMEOUT_MS);
+            in = urlConnection.getInputStream();
+            out = new FileOutputStream(original);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            out.close();
+            out = null;
+
+            Bitmap bitmap = decodeForScreen(original);
+            if (bitmap == null) {
+                Log.e(LOG_TAG, "Could not decode " + imageUrl);
+                return;
+            }
+            save(bitmap, bucket);
+            bitmap.recycle();
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error downloading " + imageUrl, e);
+        } finally {
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+            closeQuietly(in);
+            closeQuietly(out);
+            original.delete();
+        }
+    }
+
+    /**
+     * Decodes the image so that its shorter side is no bigger than the screen's longer side: Muzei
+     * scales the wallpaper to fill the screen in either orientation, so anything more is wasted.
+     */
+    private Bitmap decodeForScreen(File file) {
+        DisplayMetrics metrics = mContext.getResources().getDisplayMetrics();
+        int target = Math.max(metrics.widthPixels, metrics.heightPixels);
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        int shortSide = Math.min(options.outWidth, options.outHeight);
+        if (shortSide <= 0) {
+            return null;
+        }
+
+        // Cheap power-of-two subsampling first, then an exact scale for what's left
+        int sampleSize = 1;
+        while (shortSide / (sampleSize * 2) >= target) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap sampled = BitmapFactory.decodeFile(file.getPath(), options);
+        if (sampled == null) {
+            return null;
+        }
+        int sampledShortSide = Math.min(sampled.getWidth(), sampled.getHeight());
+        if (sampledShortSide <= target) {
+            return sampled;
+        }
+        float scale = (float) target / sampledShortSide;
+        Bitmap scaled = Bitmap.createScaledBitmap(sampled,
+                Math.round(sampled.getWidth() * scale), Math.round(sampled.getHeight() * scale),
+                true);
+        if (scaled != sampled) {
+            sampled.recycle();
+        }
+        return scaled;
+    }
+
+    private void save(Bitmap bitmap, String bucket) {
+        if (!mDir.isDirectory() && !mDir.mkdirs()) {
+            Log.e(LOG_TAG, "Could not create " + mDir);
+            return;
+        }
+        AtomicFile file = new AtomicFile(getFile(bucket));
+        FileOutputStream fos = null;
+        try {
+            fos = file.startWrite();
+            bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, fos);
+            file.finishWrite(fos);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error writing Muzei artwork", e);
+            if (fos != null) {
+                file.failWrite(fos);
+            }
+        }
+    }
+
+    private File getFile(String bucket) {
+        return new File(mDir, bucket + ".jpg");
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // nothing left to do
+            }
+        }
+    }
+}
@@ -4,13 +4,13 @@ package com.example.android.sunshine.app.muzei;
  * Created by joaobiriba on 18/09/15.
  */
 
+import android.content.ContentResolver;
 import android.content.Intent;
-import android.database.Cursor;
 import android.net.Uri;
 
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.Utility;
-import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.data.ForecastSnapshot;
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
 import com.google.android.apps.muzei.api.Artwork;
 import com.google.android.apps.muzei.api.MuzeiArtSource;
@@ -19,13 +19,8 @@ import com.google.android.apps.muzei.api.MuzeiArtSource;
  * Muzei source that changes your background based on the current weather conditions
  */
 public class WeatherMuzeiSource extends MuzeiArtSource {
-    private static final String[] FORECAST_COLUMNS = new String[]{
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC
-    };
-    // these indices must match the projection
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_SHORT_DESC = 1;
+    // Muzei needs to be granted read access to our cached artwork URIs
+    private static final String MUZEI_PACKAGE = "net.nurik.roman.muzei";
 
     public WeatherMuzeiSource() {
         super("WeatherMuzeiSource");
@@ -43,26 +38,51 @@ public class WeatherMuzeiSource extends MuzeiArtSource {
 
     @Override
     protected void onUpdate(int reason) {
-        String location = Utility.getPreferredLocation(this);
-        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
-                location, System.currentTimeMillis());
-        Cursor cursor = getContentResolver().query(weatherForLocationUri, FORECAST_COLUMNS, null,
-                null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
-        if (cursor.moveToFirst()) {
-            int weatherId = cursor.getInt(INDEX_WEATHER_ID);
-            String desc = cursor.getString(INDEX_SHORT_DESC);
+        MuzeiArtworkCache artworkCache = new MuzeiArtworkCache(this);
+        ForecastSnapshot snapshot = ForecastSnapshot.get(this);
+        int today = snapshot != null ? snapshot.getTodayIndex() : -1;
+        if (today >= 0) {
+            publishForCondition(artworkCache, reason, snapshot.getWeatherId(today),
+                    snapshot.getDescription(today), snapshot.getLocationSetting());
+        }
+        // Get the other conditions ready while we are on a free network
+        artworkCache.prefetchIfUnmetered();
+    }
+
+    private void publishForCondition(MuzeiArtworkCache artworkCache, int reason, int weatherId,
+                                     String desc, String location) {
+        String bucket = MuzeiArtworkCache.getBucket(weatherId);
+        // Only publish a new wallpaper if we have a valid image
+        if (bucket == null) {
+            return;
+        }
+        artworkCache.cacheIfUnmetered(weatherId);
+        Uri imageUri = artworkCache.getCachedImageUri(weatherId);
 
-            String imageUrl = Utility.getImageUrlForWeatherCondition(weatherId);
-            // Only publish a new wallpaper if we have a valid image
-            if (imageUrl != null) {
-                publishArtwork(new Artwork.Builder()
-                        .imageUri(Uri.parse(imageUrl))
-                        .title(desc)
-                        .byline(location)
-                        .viewIntent(new Intent(this, MainActivity.class))
-                        .build());
-            }
+        // Every new artwork makes Muzei load and blur a new image, so only republish when the
+        // condition bucket changes, or when a local copy can replace a remote image.
+        Artwork current = getCurrentArtwork();
+        if (reason != UPDATE_REASON_INITIAL && current != null
+                && bucket.equals(current.getToken())
+                && (imageUri == null || isLocal(current.getImageUri()))) {
+            return;
         }
-        cursor.close();
+
+        if (imageUri != null) {
+            grantUriPermission(MUZEI_PACKAGE, imageUri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        } else {
+            imageUri = Uri.parse(Utility.getImageUrlForWeatherCondition(weatherId));
+        }
+        publishArtwork(new Artwork.Builder()
+                .imageUri(imageUri)
+                .token(bucket)
+                .title(desc)
+                .byline(location)
+                .viewIntent(new Intent(this, MainActivity.class))
+                .build());
+    }
+
+    private static boolean isLocal(Uri imageUri) {
+        return imageUri != null && ContentResolver.SCHEME_CONTENT.equals(imageUri.getScheme());
     }
 }
\ No newline at end of file
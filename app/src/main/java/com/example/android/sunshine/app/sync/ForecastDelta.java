@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.ForecastSnapshot;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.wear.WatchfaceUpdateHelper;
+import com.example.android.sunshine.core.ForecastDays;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.TimeZone;
+
+/**
+ * A set of forecast changes pushed by the server, applied straight to the
+ * {@link com.example.android.sunshine.app.data.WeatherProvider} without fetching the whole
+ * forecast again.  The wire format is a small JSON object:
+ * <pre>
+ * {"location": "94043", "start": 1419033600000,
+ *  "days": [{"offset": 0, "max": 21.5, "id": 500, "desc": "Rain"}, ...]}
+ * </pre>
+ * {@code start} is the date of offset 0, and offsets count calendar days from it, so they stay
+ * on the stored dates across daylight saving changes.  Each day only carries the fields that
+ * changed, using the short names in {@link #FIELDS}; temperatures are metric, like the rest of the
+ * database.
+ */
+public class ForecastDelta {
+    private static final String LOG_TAG = ForecastDelta.class.getSimpleName();
+
+    // The sync fetches this many days, so a delta can't reach further out.
+    private static final int MAX_DAY_OFFSET = 13;
+
+    private static final String KEY_LOCATION = "location";
+    private static final String KEY_START = "start";
+    private static final String KEY_DAYS = "days";
+    private static final String KEY_OFFSET = "offset";
+    private static final String KEY_WEATHER_ID = "id";
+    private static final String KEY_SHORT_DESC = "desc";
+
+    // The numeric fields a delta may carry, and the range we accept for each
+    private static final Field[] FIELDS = {
+            new Field("max", WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, -100, 70),
+            new Field("min", WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, -100, 70),
+            new Field("hum", WeatherContract.WeatherEntry.COLUMN_HUMIDITY, 0, 100),
+            new Field("pres", WeatherContract.WeatherEntry.COLUMN_PRESSURE, 800, 1100),
+            new Field("wind", WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, 0, 500),
+            new Field("deg", WeatherContract.WeatherEntry.COLUMN_DEGREES, 0, 360)
+    };
+
+    private static class Field {
+        final String key;
+        final String column;
+        final double min;
+        final double max;
+
+        Field(String key, String column, double min, double max) {
+            this.key = key;
+            this.column = column;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    private static final String[] LOCATION_COLUMNS = {WeatherContract.LocationEntry._ID};
+    private static final String[] DATE_COLUMNS = {WeatherContract.WeatherEntry.COLUMN_DATE};
+    // What WeatherAlertEngine checks a day by
+    private static final String[] ALERT_COLUMNS = {
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED
+    };
+
+    private final String mLocationSetting;
+    private final long[] mDates;
+    private final ContentValues[] mValues;
+
+    private ForecastDelta(String locationSetting, long[] dates, ContentValues[] values) {
+        mLocationSetting = locationSetting;
+        mDates = dates;
+        mValues = values;
+    }
+
+    /**
+     * Parses and validates a delta.
+     *
+     * @return the delta, or null if it is malformed or out of range.
+     */
+    static ForecastDelta parse(String json) {
+        try {
+            JSONObject delta = new JSONObject(json);
+            String locationSetting = delta.getString(KEY_LOCATION);
+            TimeZone timeZone = TimeZone.getDefault();
+            int startDay = ForecastDays.julianDay(delta.getLong(KEY_START), timeZone);
+            JSONArray days = delta.getJSONArray(KEY_DAYS);
+            long[] dates = new long[days.length()];
+            ContentValues[] values = new ContentValues[days.length()];
+            HashSet<Integer> offsets = new HashSet<>();
+            for (int i = 0; i < days.length(); i++) {
+                JSONObject day = days.getJSONObject(i);
+                int offset = day.getInt(KEY_OFFSET);
+                if (offset < 0 || offset > MAX_DAY_OFFSET || !offsets.add(offset)) {
+                    Log.w(LOG_TAG, "Bad day offset " + offset);
+                    return null;
+                }
+                dates[i] = ForecastDays.startOfJulianDay(startDay + offset, timeZone);
+                values[i] = parseDay(day);
+                if (values[i] == null) {
+                    return null;
+                }
+            }
+            return new ForecastDelta(locationSetting, dates, values);
+        } catch (JSONException e) {
+            Log.w(LOG_TAG, "Malformed forecast delta", e);
+            return null;
+        }
+    }
+
+    private static ContentValues parseDay(JSONObject day) throws JSONException {
+        ContentValues values = new ContentValues();
+        HashSet<String> known = new HashSet<>();
+        known.add(KEY_OFFSET);
+        if (day.has(KEY_WEATHER_ID)) {
+            int weatherId = day.getInt(KEY_WEATHER_ID);
+            if (weatherId < 200 || weatherId > 999) {
+                Log.w(LOG_TAG, "Bad weather id " + weatherId);
+                return null;
+            }
+            values.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
+            known.add(KEY_WEATHER_ID);
+        }
+        if (day.has(KEY_SHORT_DESC)) {
+            values.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, day.getString(KEY_SHORT_DESC));
+            known.add(KEY_SHORT_DESC);
+        }
+        for (Field field : FIELDS) {
+            if (!day.has(field.key)) {
+                continue;
+            }
+            double value = day.getDouble(field.key);
+            if (value < field.min || value > field.max) {
+                Log.w(LOG_TAG, "Out of range " + field.key + ": " + value);
+                return null;
+            }
+            values.put(field.column, value);
+            known.add(field.key);
+        }
+        // Refuse anything we don't understand rather than applying half of it
+        Iterator<String> keys = day.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!known.contains(key)) {
+                Log.w(LOG_TAG, "Unknown delta field " + key);
+                return null;
+            }
+        }
+        return values.size() > 0 ? values : null;
+    }
+
+    /**
+     * Applies the delta to the rows already in the database.  Nothing is written unless every
+     * day it touches is already there, since a delta can't create a complete row.
+     *
+     * @return true if the delta was applied, false if a full sync is needed instead.
+     */
+    boolean apply(Context context) {
+        long locationId = getLocationId(context, mLocationSetting);
+        if (locationId < 0) {
+            return false;
+        }
+        HashSet<Long> storedDates = getStoredDates(context, mLocationSetting);
+        for (long date : mDates) {
+            if (!storedDates.contains(date)) {
+                Log.d(LOG_TAG, "Delta touches a day we don't have yet");
+                return false;
+            }
+        }
+
+        // One batch, so the days change together and observers hear about it once
+        String selection = WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND "
+                + WeatherContract.WeatherEntry.COLUMN_DATE + " = ?";
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(mDates.length);
+        for (int i = 0; i < mDates.length; i++) {
+            operations.add(ContentProviderOperation
+                    .newUpdate(WeatherContract.WeatherEntry.CONTENT_URI)
+                    .withValues(mValues[i])
+                    .withSelection(selection,
+                            new String[]{Long.toString(locationId), Long.toString(mDates[i])})
+                    .withExpectedCount(1)
+                    .build());
+        }
+        try {
+            context.getContentResolver().applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+        } catch (RemoteException | OperationApplicationException e) {
+            Log.w(LOG_TAG, "Couldn't apply forecast delta", e);
+            return false;
+        }
+        // Everything else reads today's weather from the snapshot, so refresh it too.
+        ForecastSnapshot.reload(context);
+        return true;
+    }
+
+    private static long getLocationId(Context context, String locationSetting) {
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                LOCATION_COLUMNS,
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{locationSetting},
+                null);
+        if (cursor == null) {
+            return -1;
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static HashSet<Long> getStoredDates(Context context, String locationSetting) {
+        HashSet<Long> dates = new HashSet<>();
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocation(locationSetting),
+                DATE_COLUMNS, null, null, null);
+        if (cursor == null) {
+            return dates;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                dates.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return dates;
+    }
+
+    // Every stored day of the location, as the sync hands them to WeatherAlertEngine
+    private static ContentValues[] getAlertDays(Context context, String locationSetting) {
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocation(locationSetting),
+                ALERT_COLUMNS, null, null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor == null) {
+            return new ContentValues[0];
+        }
+        try {
+            ContentValues[] days = new ContentValues[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ContentValues day = new ContentValues();
+                day.put(WeatherContract.WeatherEntry.COLUMN_DATE, cursor.getLong(0));
+                day.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, cursor.getInt(1));
+                day.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, cursor.getDouble(2));
+                day.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, cursor.getDouble(3));
+                day.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, cursor.getDouble(4));
+                days[i] = day;
+            }
+            return days;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Applies a pushed delta for the preferred location, or asks for a sync if it can't be
+     * applied.  An applied delta reaches everything a sync would: the widgets and Muzei, the
+     * weather alerts and the watch face.  Blocks on the database and the wearable connection, so
+     * it runs in {@link ForecastDeltaService}.
+     */
+    static void applyOrSync(Context context, String json) {
+        ForecastDelta delta = parse(json);
+        if (delta != null && !delta.mLocationSetting.equals(Utility.getPreferredLocation(context))) {
+            // We only keep the forecast for the preferred location, so there's nothing to update
+            Log.d(LOG_TAG, "Ignoring delta for another location");
+            return;
+        }
+        if (delta != null && delta.apply(context)) {
+            Log.d(LOG_TAG, "Applied forecast delta");
+            // The server pushed this because it matters, so don't let the widgets sit on it
+            SunshineSyncAdapter.notifyDataUpdated(context, true);
+            WeatherAlertEngine.onForecastSynced(context, delta.mLocationSetting,
+                    getAlertDays(context, delta.mLocationSetting));
+            WatchfaceUpdateHelper watchfaceUpdateHelper = new WatchfaceUpdateHelper(context);
+            try {
+                watchfaceUpdateHelper.doUpdate();
+            } finally {
+                watchfaceUpdateHelper.disconnect();
+            }
+        } else {
+            SunshineSyncAdapter.syncImmediately(context);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.app.IntentService;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * IntentService which applies the forecast deltas pushed through GCM, with everything that
+ * follows them, off the receiver and on a thread of its own.
+ */
+public class ForecastDeltaService extends IntentService {
+
+    private static final String EXTRA_FORECAST_DELTA = "forecast_delta";
+
+    public ForecastDeltaService() {
+        super("ForecastDeltaService");
+    }
+
+    /**
+     * Queues a delta in the {@link ForecastDelta} wire format to be applied.
+     */
+    public static void startApply(Context context, String forecastDelta) {
+        Intent intent = new Intent(context, ForecastDeltaService.class);
+        intent.putExtra(EXTRA_FORECAST_DELTA, forecastDelta);
+        context.startService(intent);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        String forecastDelta = intent.getStringExtra(EXTRA_FORECAST_DELTA);
+        if (forecastDelta != null) {
+            ForecastDelta.applyOrSync(this, forecastDelta);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.example.android.sunshine.app.sync;
 import android.accounts.Account;
 import android.accounts.AccountManager;
 import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.AbstractThreadedSyncAdapter;
@@ -20,63 +21,57 @@ import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
+import android.service.notification.StatusBarNotification;
 import android.support.annotation.IntDef;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.TaskStackBuilder;
-import android.text.format.Time;
 import android.util.Log;
 
-import com.bumptech.glide.Glide;
 import com.example.android.sunshine.app.BuildConfig;
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.WeatherArtCache;
+import com.example.android.sunshine.app.data.ForecastSnapshot;
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.muzei.WeatherMuzeiSource;
 import com.example.android.sunshine.app.wear.WatchfaceUpdateHelper;
+import com.example.android.sunshine.core.DailyForecast;
+import com.example.android.sunshine.core.ForecastDays;
+import com.example.android.sunshine.core.ForecastParser;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.Vector;
-import java.util.concurrent.ExecutionException;
+import java.text.ParseException;
+import java.util.TimeZone;
 
 public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public final String LOG_TAG = SunshineSyncAdapter.class.getSimpleName();
     public static final String ACTION_DATA_UPDATED =
             "com.example.android.sunshine.app.ACTION_DATA_UPDATED";
+    // Set on ACTION_DATA_UPDATED when the sync was asked for by the user rather than periodic
+    public static final String EXTRA_USER_REQUESTED =
+            "com.example.android.sunshine.app.EXTRA_USER_REQUESTED";
     // Interval at which to sync with the weather, in seconds.
     // 60 seconds (1 minute) * 180 = 3 hours
     public static final int SYNC_INTERVAL = 60 * 180;
     public static final int SYNC_FLEXTIME = SYNC_INTERVAL / 3;
     private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+    // How many days of forecast to ask for
+    private static final int FORECAST_DAYS = 14;
     private static final int WEATHER_NOTIFICATION_ID = 3004;
-
-
-    private static final String[] NOTIFY_WEATHER_PROJECTION = new String[]{
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC
-    };
-
-    // these indices must match the projection
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_MAX_TEMP = 1;
-    private static final int INDEX_MIN_TEMP = 2;
-    private static final int INDEX_SHORT_DESC = 3;
+    // How long we wait for the notification's remote art before keeping the local one
+    private static final long LARGE_ICON_TIMEOUT_MS = 10 * 1000;
 
 
     @Retention(RetentionPolicy.SOURCE)
@@ -93,6 +88,10 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
     private WatchfaceUpdateHelper mWatchfaceUpdateHelper;
 
+    // Reused from one sync to the next; syncs don't overlap
+    private final ForecastParser mForecastParser = new ForecastParser();
+    private final DailyForecast mForecast = new DailyForecast(FORECAST_DAYS);
+
     public SunshineSyncAdapter(Context context, boolean autoInitialize) {
         super(context, autoInitialize);
         mWatchfaceUpdateHelper = new WatchfaceUpdateHelper(context);
@@ -103,18 +102,16 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public void onPerformSync(Account account, Bundle extras, String authority, ContentProviderClient provider, SyncResult syncResult) {
         Log.d(LOG_TAG, "Starting sync");
         String locationQuery = Utility.getPreferredLocation(getContext());
+        boolean userRequested = extras.getBoolean(ContentResolver.SYNC_EXTRAS_MANUAL, false);
 
         // These two need to be declared outside the try/catch
         // so that they can be closed in the finally block.
         HttpURLConnection urlConnection = null;
-        BufferedReader reader = null;
-
-        // Will contain the raw JSON response as a string.
-        String forecastJsonStr = null;
+        Reader reader = null;
 
         String format = "json";
         String units = "metric";
-        int numDays = 14;
+        int numDays = FORECAST_DAYS;
 
         try {
             // Construct the URL for the OpenWeatherMap query
@@ -143,38 +140,27 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
             urlConnection.setRequestMethod("GET");
             urlConnection.connect();
 
-            // Read the input stream into a String
             InputStream inputStream = urlConnection.getInputStream();
-            StringBuffer buffer = new StringBuffer();
             if (inputStream == null) {
                 // Nothing to do.
                 return;
             }
-            reader = new BufferedReader(new InputStreamReader(inputStream));
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Since it's JSON, adding a newline isn't necessary (it won't affect parsing)
-                // But it does make debugging a *lot* easier if you print out the completed
-                // buffer for debugging.
-                buffer.append(line + "\n");
-            }
+            reader = new InputStreamReader(inputStream);
 
-            if (buffer.length() == 0) {
+            // The parser reads the response as it arrives, with no copy of it as a string
+            if (!mForecastParser.parse(reader, mForecast)) {
                 // Stream was empty.  No point in parsing.
                 setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
                 return;
             }
-            forecastJsonStr = buffer.toString();
-            getWeatherDataFromJson(forecastJsonStr, locationQuery);
+            storeForecast(mForecast, locationQuery, userRequested);
         } catch (IOException e) {
             Log.e(LOG_TAG, "Error ", e);
             // If the code didn't successfully get the weather data, there's no point in attempting
             // to parse it.
             setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, e.getMessage(), e);
-            e.printStackTrace();
+        } catch (ParseException e) {
+            Log.e(LOG_TAG, e.getMessage() + " at " + e.getErrorOffset(), e);
             setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
         } finally {
             if (urlConnection != null) {
@@ -192,180 +178,87 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     }
 
     /**
-     * Take the String representing the complete forecast in JSON Format and
-     * pull out the data we need to construct the Strings needed for the wireframes.
-     * <p/>
-     * Fortunately parsing is easy:  constructor takes the JSON string and converts it
-     * into an Object hierarchy for us.
+     * Stores a parsed forecast and tells everything that shows it.
      */
-    private void getWeatherDataFromJson(String forecastJsonStr,
-                                        String locationSetting)
-            throws JSONException {
-
-        // Now we have a String representing the complete forecast in JSON Format.
-        // Fortunately parsing is easy:  constructor takes the JSON string and converts it
-        // into an Object hierarchy for us.
-
-        // These are the names of the JSON objects that need to be extracted.
-
-        // Location information
-        final String OWM_CITY = "city";
-        final String OWM_CITY_NAME = "name";
-        final String OWM_COORD = "coord";
-
-        // Location coordinate
-        final String OWM_LATITUDE = "lat";
-        final String OWM_LONGITUDE = "lon";
-
-        // Weather information.  Each day's forecast info is an element of the "list" array.
-        final String OWM_LIST = "list";
-
-        final String OWM_PRESSURE = "pressure";
-        final String OWM_HUMIDITY = "humidity";
-        final String OWM_WINDSPEED = "speed";
-        final String OWM_WIND_DIRECTION = "deg";
-
-        // All temperatures are children of the "temp" object.
-        final String OWM_TEMPERATURE = "temp";
-        final String OWM_MAX = "max";
-        final String OWM_MIN = "min";
-
-        final String OWM_WEATHER = "weather";
-        final String OWM_DESCRIPTION = "main";
-        final String OWM_WEATHER_ID = "id";
-        final String OWM_MESSAGE_CODE = "cod";
-
-
-        try {
-            JSONObject forecastJson = new JSONObject(forecastJsonStr);
-
-
-            // do we have an error?
-            if (forecastJson.has(OWM_MESSAGE_CODE)) {
-                int errorCode = forecastJson.getInt(OWM_MESSAGE_CODE);
-
-                switch (errorCode) {
-                    case HttpURLConnection.HTTP_OK:
-                        break;
-                    case HttpURLConnection.HTTP_NOT_FOUND:
-                        setLocationStatus(getContext(), LOCATION_STATUS_INVALID);
-                        return;
-                    default:
-                        setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-                        return;
-                }
-            }
-            JSONArray weatherArray = forecastJson.getJSONArray(OWM_LIST);
-
-            JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
-            String cityName = cityJson.getString(OWM_CITY_NAME);
-
-            JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
-            double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
-            double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
-
-            long locationId = addLocation(locationSetting, cityName, cityLatitude, cityLongitude);
-
-            // Insert the new weather information into the database
-            Vector<ContentValues> cVVector = new Vector<ContentValues>(weatherArray.length());
-
-            // OWM returns daily forecasts based upon the local time of the city that is being
-            // asked for, which means that we need to know the GMT offset to translate this data
-            // properly.
-
-            // Since this data is also sent in-order and the first day is always the
-            // current day, we're going to take advantage of that to get a nice
-            // normalized UTC date for all of our weather.
-
-            Time dayTime = new Time();
-            dayTime.setToNow();
-
-            // we start at the day returned by local time. Otherwise this is a mess.
-            int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
-
-            // now we work exclusively in UTC
-            dayTime = new Time();
-
-            for (int i = 0; i < weatherArray.length(); i++) {
-                // These are the values that will be collected.
-                long dateTime;
-                double pressure;
-                int humidity;
-                double windSpeed;
-                double windDirection;
-
-                double high;
-                double low;
-
-                String description;
-                int weatherId;
-
-                // Get the JSON object representing the day
-                JSONObject dayForecast = weatherArray.getJSONObject(i);
-
-                // Cheating to convert this to UTC time, which is what we want anyhow
-                dateTime = dayTime.setJulianDay(julianStartDay + i);
-
-                pressure = dayForecast.getDouble(OWM_PRESSURE);
-                humidity = dayForecast.getInt(OWM_HUMIDITY);
-                windSpeed = dayForecast.getDouble(OWM_WINDSPEED);
-                windDirection = dayForecast.getDouble(OWM_WIND_DIRECTION);
-
-                // Description is in a child array called "weather", which is 1 element long.
-                // That element also contains a weather code.
-                JSONObject weatherObject =
-                        dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
-                description = weatherObject.getString(OWM_DESCRIPTION);
-                weatherId = weatherObject.getInt(OWM_WEATHER_ID);
-
-                // Temperatures are in a child object called "temp".  Try not to name variables
-                // "temp" when working with temperature.  It confuses everybody.
-                JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
-                high = temperatureObject.getDouble(OWM_MAX);
-                low = temperatureObject.getDouble(OWM_MIN);
-
-                ContentValues weatherValues = new ContentValues();
+    private void storeForecast(DailyForecast forecast, String locationSetting,
+                               boolean userRequested) {
+        switch (forecast.getMessageCode()) {
+            case DailyForecast.CODE_NONE:
+            case HttpURLConnection.HTTP_OK:
+                break;
+            case HttpURLConnection.HTTP_NOT_FOUND:
+                setLocationStatus(getContext(), LOCATION_STATUS_INVALID);
+                return;
+            default:
+                setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
+                return;
+        }
 
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTime);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, description);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
+        double cityLatitude = forecast.getLatitude();
+        double cityLongitude = forecast.getLongitude();
+        long locationId = addLocation(locationSetting, forecast.getCityName(), cityLatitude,
+                cityLongitude);
+
+        // OWM returns daily forecasts based upon the local time of the city that is being
+        // asked for, which means that we need to know the GMT offset to translate this data
+        // properly.
+
+        // Since this data is also sent in-order and the first day is always the
+        // current day, we're going to take advantage of that to get a nice
+        // normalized date for all of our weather: the start of each local day.
+        TimeZone timeZone = TimeZone.getDefault();
+        int julianStartDay = ForecastDays.julianDay(System.currentTimeMillis(), timeZone);
+
+        // Insert the new weather information into the database
+        int count = forecast.getCount();
+        ContentValues[] cvArray = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            ContentValues weatherValues = new ContentValues();
+
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE,
+                    ForecastDays.startOfJulianDay(julianStartDay + i, timeZone));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+                    forecast.getHumidity(i));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+                    forecast.getPressure(i));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+                    forecast.getWindSpeed(i));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES,
+                    forecast.getWindDirection(i));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+                    forecast.getMaxTemp(i));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+                    forecast.getMinTemp(i));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+                    forecast.getDescription(i));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+                    forecast.getWeatherId(i));
+
+            cvArray[i] = weatherValues;
+        }
 
-                cVVector.add(weatherValues);
-            }
+        // add to database
+        if (count > 0) {
+            getContext().getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
 
-            int inserted = 0;
-            // add to database
-            if (cVVector.size() > 0) {
-                ContentValues[] cvArray = new ContentValues[cVVector.size()];
-                cVVector.toArray(cvArray);
-                getContext().getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
-
-                // delete old data so we don't build up an endless history
-                getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
-                        WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
-                        new String[]{Long.toString(dayTime.setJulianDay(julianStartDay - 1))});
-
-                updateWidgets();
-                updateMuzei();
-                notifyWeather();
-                updateWatchFace();
-            }
-            Log.d(LOG_TAG, "Sync Complete. " + cVVector.size() + " Inserted");
-            setLocationStatus(getContext(), LOCATION_STATUS_OK);
+            // publish the snapshot the widgets, watch face, notification and Muzei read from,
+            // and the forecast list shows on the next cold start
+            ForecastSnapshot.publish(getContext(), locationSetting, cityLatitude, cityLongitude, cvArray);
 
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, e.getMessage(), e);
-            e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
+            // delete old data so we don't build up an endless history
+            long yesterday = ForecastDays.startOfJulianDay(julianStartDay - 1, timeZone);
+            getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
+                    new String[]{Long.toString(yesterday)});
 
+            notifyDataUpdated(getContext(), userRequested);
+            notifyWeather();
+            WeatherAlertEngine.onForecastSynced(getContext(), locationSetting, cvArray);
+            updateWatchFace();
         }
+        Log.d(LOG_TAG, "Sync Complete. " + count + " Inserted");
+        setLocationStatus(getContext(), LOCATION_STATUS_OK);
     }
 
     private void updateWatchFace() {
@@ -375,7 +268,7 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     private void notifyWeather() {
         Context context = getContext();
         //checking the last update and notify if it' the first of the day
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        final SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
         String displayNotificationsKey = context.getString(R.string.pref_enable_notifications_key);
         boolean displayNotifications = prefs.getBoolean(displayNotificationsKey,
                 Boolean.parseBoolean(context.getString(R.string.pref_enable_notifications_default)));
@@ -387,23 +280,19 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
             if (System.currentTimeMillis() - lastSync >= DAY_IN_MILLIS) {
                 // Last sync was more than 1 day ago, let's send a notification with the weather.
-                String locationQuery = Utility.getPreferredLocation(context);
-
-                Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(locationQuery, System.currentTimeMillis());
-
-                // we'll query our contentProvider, as always
-                Cursor cursor = context.getContentResolver().query(weatherUri, NOTIFY_WEATHER_PROJECTION, null, null, null);
+                ForecastSnapshot snapshot = ForecastSnapshot.get(context);
+                int today = snapshot != null ? snapshot.getTodayIndex() : -1;
 
-                if (cursor.moveToFirst()) {
-                    int weatherId = cursor.getInt(INDEX_WEATHER_ID);
-                    double high = cursor.getDouble(INDEX_MAX_TEMP);
-                    double low = cursor.getDouble(INDEX_MIN_TEMP);
-                    String desc = cursor.getString(INDEX_SHORT_DESC);
+                if (today >= 0) {
+                    int weatherId = snapshot.getWeatherId(today);
+                    double high = snapshot.getMaxTemp(today);
+                    double low = snapshot.getMinTemp(today);
+                    String desc = snapshot.getDescription(today);
 
                     int iconId = Utility.getIconResourceForWeatherCondition(weatherId);
                     Resources resources = context.getResources();
                     int artResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
-                    String artUrl = Utility.getArtUrlForWeatherCondition(context, weatherId);
+                    final String artUrl = Utility.getArtUrlForWeatherCondition(context, weatherId);
 
                     // On Honeycomb and higher devices, we can retrieve the size of the large icon
                     // Prior to that, we use a fixed size
@@ -416,17 +305,15 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                             ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height)
                             : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
 
-                    // Retrieve the large icon
-                    Bitmap largeIcon;
-                    try {
-                        largeIcon = Glide.with(context)
-                                .load(artUrl)
-                                .asBitmap()
-                                .error(artResourceId)
-                                .fitCenter()
-                                .into(largeIconWidth, largeIconHeight).get();
-                    } catch (InterruptedException | ExecutionException e) {
-                        Log.e(LOG_TAG, "Error retrieving large icon from " + artUrl, e);
+                    // Build the notification right away with the art we already have: the icon
+                    // cached from an earlier download, or else the bundled drawable.  Never wait
+                    // for the network on the sync thread.
+                    final int largeIconSize = Math.max(largeIconWidth, largeIconHeight);
+                    final WeatherArtCache artCache = WeatherArtCache.getInstance(context);
+                    boolean useRemoteArt = artUrl != null && !Utility.usingLocalGraphics(context);
+                    Bitmap largeIcon = useRemoteArt ? artCache.peekArt(artUrl, largeIconSize) : null;
+                    boolean fetchLargeIcon = useRemoteArt && largeIcon == null;
+                    if (largeIcon == null) {
                         largeIcon = BitmapFactory.decodeResource(resources, artResourceId);
                     }
                     String title = context.getString(R.string.app_name);
@@ -439,7 +326,7 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
                     // NotificationCompatBuilder is a very convenient way to build backward-compatible
                     // notifications.  Just throw in some data.
-                    NotificationCompat.Builder mBuilder =
+                    final NotificationCompat.Builder mBuilder =
                             new NotificationCompat.Builder(getContext())
                                     .setColor(resources.getColor(R.color.primary_light))
                                     .setSmallIcon(iconId)
@@ -463,22 +350,66 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                                     PendingIntent.FLAG_UPDATE_CURRENT
                             );
                     mBuilder.setContentIntent(resultPendingIntent);
-
-                    NotificationManager mNotificationManager =
+                    // Before Marshmallow we can't ask whether it is still up, so remember it
+                    mBuilder.setDeleteIntent(PendingIntent.getBroadcast(context, 0,
+                            new Intent(context, NotificationDismissedReceiver.class), 0));
+
+                    final String notificationShowingKey =
+                            context.getString(R.string.pref_notification_showing);
+                    prefs.edit().putBoolean(notificationShowingKey, true).commit();
+                    final NotificationManager mNotificationManager =
                             (NotificationManager) getContext().getSystemService(Context.NOTIFICATION_SERVICE);
                     // WEATHER_NOTIFICATION_ID allows you to update the notification later on.
                     mNotificationManager.notify(WEATHER_NOTIFICATION_ID, mBuilder.build());
 
+                    if (fetchLargeIcon) {
+                        // Download the remote art in the background, and swap it into the
+                        // notification in place if it arrives in time and the notification is
+                        // still showing.  Either way the art is cached for the next one.
+                        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                Bitmap remoteIcon = artCache.getArt(artUrl, largeIconSize,
+                                        LARGE_ICON_TIMEOUT_MS);
+                                if (remoteIcon != null && isNotificationShowing(
+                                        mNotificationManager, prefs, notificationShowingKey)) {
+                                    mBuilder.setLargeIcon(remoteIcon)
+                                            .setOnlyAlertOnce(true);
+                                    mNotificationManager.notify(WEATHER_NOTIFICATION_ID,
+                                            mBuilder.build());
+                                }
+                            }
+                        });
+                    }
+
                     //refreshing last sync
                     SharedPreferences.Editor editor = prefs.edit();
                     editor.putLong(lastNotificationKey, System.currentTimeMillis());
                     editor.commit();
                 }
-                cursor.close();
             }
         }
     }
 
+    /**
+     * Whether the weather notification is still up, so swapping its icon won't bring back one
+     * the user dismissed.  Before Marshmallow the system can't tell us, so we go by the flag
+     * that {@link NotificationDismissedReceiver} clears.
+     */
+    @TargetApi(Build.VERSION_CODES.M)
+    private static boolean isNotificationShowing(NotificationManager notificationManager,
+                                                 SharedPreferences prefs, String showingKey) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return prefs.getBoolean(showingKey, false);
+        }
+        for (StatusBarNotification notification : notificationManager.getActiveNotifications()) {
+            if (notification.getId() == WEATHER_NOTIFICATION_ID) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Helper method to handle insertion of a new location in the weather database.
      *
@@ -636,19 +567,29 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         spe.commit();
     }
 
-    private void updateWidgets() {
-        Context context = getContext();
+    /**
+     * Tells the widgets and Muzei that the weather in the database changed.
+     *
+     * @param userRequested true if the change should show up right away, rather than whenever
+     *                      it is convenient for the device.
+     */
+    public static void notifyDataUpdated(Context context, boolean userRequested) {
+        updateWidgets(context, userRequested);
+        updateMuzei(context);
+    }
+
+    private static void updateWidgets(Context context, boolean userRequested) {
         // Setting the package ensures that only components in our app will receive the broadcast
         Intent dataUpdatedIntent = new Intent(ACTION_DATA_UPDATED)
-                .setPackage(context.getPackageName());
+                .setPackage(context.getPackageName())
+                .putExtra(EXTRA_USER_REQUESTED, userRequested);
         context.sendBroadcast(dataUpdatedIntent);
     }
 
-    private void updateMuzei() {
+    private static void updateMuzei(Context context) {
         // Muzei is only compatible with Jelly Bean MR1+ devices, so there's no need to update the
         // Muzei background on lower API level devices
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-            Context context = getContext();
             context.startService(new Intent(ACTION_DATA_UPDATED)
                     .setClass(context, WeatherMuzeiSource.class));
         }
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.TaskStackBuilder;
+
+import com.example.android.sunshine.app.MainActivity;
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks each sync's forecast against the user's {@link WeatherAlertRules} and posts a
+ * notification for every rule a day starts to fire.
+ * <p/>
+ * Only days whose values changed since the last sync are checked: each day's alert-relevant
+ * values are remembered as a fingerprint, next to the rules that already fired for it, so a sync
+ * that changes nothing does no rule work and an alert is posted only once per day and rule.  The
+ * state belongs to one location; another location's days start over, since the same date there
+ * is different weather.
+ */
+final class WeatherAlertEngine {
+
+    private static final int WEATHER_ALERT_NOTIFICATION_ID = 3005;
+
+    private static final String STATE_PREFS = "weather_alerts";
+    // The rules, units and location the state below was built with
+    private static final String KEY_RULES = "rules";
+    private static final String KEY_FINGERPRINT_PREFIX = "day_";
+    private static final String KEY_FIRED_PREFIX = "fired_";
+
+    private static String sCompiledKey;
+    private static WeatherAlertRules sCompiled;
+
+    private WeatherAlertEngine() {
+    }
+
+    /**
+     * Checks the days a sync just stored for {@code locationSetting}.  Call it from the sync
+     * thread after the bulk insert.
+     */
+    static void onForecastSynced(Context context, String locationSetting, ContentValues[] days) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences state = context.getSharedPreferences(STATE_PREFS, Context.MODE_PRIVATE);
+        String spec = prefs.getString(context.getString(R.string.pref_alert_rules_key), "");
+        boolean displayNotifications = prefs.getBoolean(
+                context.getString(R.string.pref_enable_notifications_key),
+                Boolean.parseBoolean(context.getString(R.string.pref_enable_notifications_default)));
+        if (spec.trim().isEmpty() || !displayNotifications) {
+            // Start over once alerts are back on, so days that already match are reported
+            if (!state.getAll().isEmpty()) {
+                state.edit().clear().commit();
+            }
+            return;
+        }
+
+        boolean metric = Utility.isMetric(context);
+        String rulesKey = (metric ? "metric:" : "imperial:") + spec;
+        WeatherAlertRules rules = getRules(rulesKey, spec, metric);
+        String stateKey = locationSetting + "\n" + rulesKey;
+        SharedPreferences.Editor editor = state.edit();
+        Map<String, ?> previous = state.getAll();
+        if (!stateKey.equals(previous.get(KEY_RULES))) {
+            // Different rules or location: every day has to be checked again
+            editor.clear().putString(KEY_RULES, stateKey);
+            previous = new HashMap<>();
+        }
+
+        long oldestDate = Long.MAX_VALUE;
+        ArrayList<Long> newAlertDates = new ArrayList<>();
+        ArrayList<String> newAlertRules = new ArrayList<>();
+        int firstAlertWeatherId = -1;
+        ArrayList<String> fired = new ArrayList<>();
+        for (ContentValues day : days) {
+            long date = day.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+            int weatherId = day.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID);
+            double high = day.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP);
+            double low = day.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP);
+            double windSpeed = day.getAsDouble(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED);
+            oldestDate = Math.min(oldestDate, date);
+
+            int fingerprint = Arrays.hashCode(new double[]{weatherId, high, low, windSpeed});
+            String fingerprintKey = KEY_FINGERPRINT_PREFIX + date;
+            Object previousFingerprint = previous.get(fingerprintKey);
+            if (previousFingerprint instanceof Integer
+                    && (Integer) previousFingerprint == fingerprint) {
+                continue;
+            }
+            editor.putInt(fingerprintKey, fingerprint);
+
+            fired.clear();
+            rules.match(weatherId, high, low, windSpeed, fired);
+            String firedKey = KEY_FIRED_PREFIX + date;
+            @SuppressWarnings("unchecked")
+            Set<String> alreadyFired = (Set<String>) previous.get(firedKey);
+            for (String rule : fired) {
+                if (alreadyFired == null || !alreadyFired.contains(rule)) {
+                    newAlertDates.add(date);
+                    newAlertRules.add(rule);
+                    if (firstAlertWeatherId < 0) {
+                        firstAlertWeatherId = weatherId;
+                    }
+                }
+            }
+            // Rules that stopped firing are dropped, so they alert again if they come back
+            editor.putStringSet(firedKey, new HashSet<>(fired));
+        }
+
+        // Forget the days that have dropped out of the forecast
+        for (String key : previous.keySet()) {
+            long date = parseDate(key);
+            if (date >= 0 && date < oldestDate) {
+                editor.remove(key);
+            }
+        }
+        editor.commit();
+
+        if (!newAlertRules.isEmpty()) {
+            notifyAlerts(context, firstAlertWeatherId, newAlertDates, newAlertRules);
+        }
+    }
+
+    // Rules are only compiled again when the user changes them
+    private static synchronized WeatherAlertRules getRules(String key, String spec,
+                                                           boolean metric) {
+        if (!key.equals(sCompiledKey)) {
+            sCompiled = WeatherAlertRules.compile(spec, metric);
+            sCompiledKey = key;
+        }
+        return sCompiled;
+    }
+
+    // The date a state key belongs to, or -1 if it isn't a per-day key
+    private static long parseDate(String key) {
+        String date;
+        if (key.startsWith(KEY_FINGERPRINT_PREFIX)) {
+            date = key.substring(KEY_FINGERPRINT_PREFIX.length());
+        } else if (key.startsWith(KEY_FIRED_PREFIX)) {
+            date = key.substring(KEY_FIRED_PREFIX.length());
+        } else {
+            return -1;
+        }
+        try {
+            return Long.parseLong(date);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void notifyAlerts(Context context, int weatherId, ArrayList<Long> dates,
+                                     ArrayList<String> rules) {
+        NotificationManager notificationManager =
+                (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        notificationManager.notify(WEATHER_ALERT_NOTIFICATION_ID,
+                buildAlertNotification(context, weatherId, dates, rules));
+    }
+
+    static Notification buildAlertNotification(Context context, int weatherId,
+                                               List<Long> dates, List<String> rules) {
+        NotificationCompat.InboxStyle inboxStyle = new NotificationCompat.InboxStyle();
+        String firstLine = null;
+        for (int i = 0; i < rules.size(); i++) {
+            String line = context.getString(R.string.format_weather_alert,
+                    Utility.getFriendlyDayString(context, dates.get(i), false), rules.get(i));
+            if (firstLine == null) {
+                firstLine = line;
+            }
+            inboxStyle.addLine(line);
+        }
+
+        Intent resultIntent = new Intent(context, MainActivity.class);
+        TaskStackBuilder stackBuilder = TaskStackBuilder.create(context);
+        stackBuilder.addNextIntent(resultIntent);
+        PendingIntent resultPendingIntent =
+                stackBuilder.getPendingIntent(0, PendingIntent.FLAG_UPDATE_CURRENT);
+
+        // Extreme weather and some of the rarer fog ids have no icon of their own, and a
+        // notification without a valid small icon takes the app down when it is posted
+        int iconId = Utility.getIconResourceForWeatherCondition(weatherId);
+        if (iconId < 0) {
+            iconId = R.drawable.ic_storm;
+        }
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context)
+                .setColor(context.getResources().getColor(R.color.primary_light))
+                .setSmallIcon(iconId)
+                .setContentTitle(context.getString(R.string.weather_alert_title))
+                .setContentText(firstLine)
+                .setNumber(rules.size())
+                .setStyle(inboxStyle)
+                .setAutoCancel(true)
+                .setContentIntent(resultPendingIntent);
+        return builder.build();
+    }
+}
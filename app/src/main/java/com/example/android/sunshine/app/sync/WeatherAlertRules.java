@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.util.Log;
+
+import com.example.android.sunshine.core.Units;
+import com.example.android.sunshine.core.WeatherConditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * The user's weather alert rules, compiled so that checking a day costs the same however many
+ * rules there are.  A rule list is separated by commas and each rule is one of
+ * <ul>
+ * <li>a threshold on the high, low or wind speed: {@code max>30}, {@code min<-5}, {@code wind>40},
+ * in the units the user has picked</li>
+ * <li>a condition category: {@code storm}, {@code drizzle}, {@code rain}, {@code snow},
+ * {@code fog}, {@code clear}, {@code clouds} or {@code extreme}</li>
+ * </ul>
+ * Rules that can't be parsed are logged and skipped.
+ */
+final class WeatherAlertRules {
+    private static final String LOG_TAG = WeatherAlertRules.class.getSimpleName();
+
+    static final String FIELD_MAX = "max";
+    static final String FIELD_MIN = "min";
+    static final String FIELD_WIND = "wind";
+
+    private static final String[] CATEGORIES =
+            {"storm", "drizzle", "rain", "snow", "fog", "clear", "clouds", "extreme"};
+
+    // Indexed by WeatherConditions category: the index into CATEGORIES, or -1
+    private static final int[] CONDITION_CATEGORIES = {-1, 0, 1, 2, 3, 4, 5, 6, 6, 7};
+    private static final int CATEGORY_RAIN = 2;
+    private static final int CATEGORY_FOG = 4;
+
+    private final Thresholds mMax = new Thresholds();
+    private final Thresholds mMin = new Thresholds();
+    private final Thresholds mWind = new Thresholds();
+    // The rule for each condition category, or null
+    private final String[] mCategoryRules = new String[CATEGORIES.length];
+    private int mCount;
+
+    /**
+     * Every threshold on one field, sorted so the matching rules can be found by binary search.
+     */
+    private static final class Thresholds {
+        // value > threshold fires, in ascending order: the matches are a prefix
+        double[] above = new double[0];
+        String[] aboveRules = new String[0];
+        // value < threshold fires, in descending order: the matches are a prefix
+        double[] below = new double[0];
+        String[] belowRules = new String[0];
+
+        void match(double value, Collection<String> out) {
+            int n = countPrefix(above, value, true);
+            for (int i = 0; i < n; i++) {
+                out.add(aboveRules[i]);
+            }
+            n = countPrefix(below, value, false);
+            for (int i = 0; i < n; i++) {
+                out.add(belowRules[i]);
+            }
+        }
+
+        // The number of leading thresholds the value is above (or below)
+        private static int countPrefix(double[] thresholds, double value, boolean ascending) {
+            int lo = 0;
+            int hi = thresholds.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                boolean fires = ascending ? value > thresholds[mid] : value < thresholds[mid];
+                if (fires) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    private WeatherAlertRules() {
+    }
+
+    /**
+     * @param spec   the rules as the user typed them.
+     * @param metric whether thresholds are in Celsius and km/h rather than Fahrenheit and mph.
+     */
+    static WeatherAlertRules compile(String spec, boolean metric) {
+        WeatherAlertRules rules = new WeatherAlertRules();
+        if (spec == null) {
+            return rules;
+        }
+        ArrayList<double[]> maxAbove = new ArrayList<>();
+        ArrayList<double[]> maxBelow = new ArrayList<>();
+        ArrayList<double[]> minAbove = new ArrayList<>();
+        ArrayList<double[]> minBelow = new ArrayList<>();
+        ArrayList<double[]> windAbove = new ArrayList<>();
+        ArrayList<double[]> windBelow = new ArrayList<>();
+        ArrayList<String> labels = new ArrayList<>();
+
+        for (String part : spec.split(",")) {
+            String rule = part.trim().toLowerCase(Locale.US).replace(" ", "");
+            if (rule.isEmpty() || labels.contains(rule)) {
+                continue;
+            }
+            int category = Arrays.asList(CATEGORIES).indexOf(rule);
+            if (category >= 0) {
+                rules.mCategoryRules[category] = rule;
+                labels.add(rule);
+                continue;
+            }
+
+            int op = Math.max(rule.indexOf('>'), rule.indexOf('<'));
+            if (op <= 0 || op == rule.length() - 1) {
+                Log.w(LOG_TAG, "Skipping alert rule " + part);
+                continue;
+            }
+            String field = rule.substring(0, op);
+            boolean above = rule.charAt(op) == '>';
+            double threshold;
+            try {
+                threshold = Double.parseDouble(rule.substring(op + 1));
+            } catch (NumberFormatException e) {
+                Log.w(LOG_TAG, "Skipping alert rule " + part);
+                continue;
+            }
+            // The database is metric
+            switch (field) {
+                case FIELD_MAX:
+                case FIELD_MIN:
+                    if (!metric) {
+                        threshold = Units.fahrenheitToCelsius(threshold);
+                    }
+                    break;
+                case FIELD_WIND:
+                    if (!metric) {
+                        threshold = Units.mphToKmh(threshold);
+                    }
+                    break;
+                default:
+                    Log.w(LOG_TAG, "Skipping alert rule " + part);
+                    continue;
+            }
+            double[] entry = {threshold, labels.size()};
+            labels.add(rule);
+            if (FIELD_MAX.equals(field)) {
+                (above ? maxAbove : maxBelow).add(entry);
+            } else if (FIELD_MIN.equals(field)) {
+                (above ? minAbove : minBelow).add(entry);
+            } else {
+                (above ? windAbove : windBelow).add(entry);
+            }
+        }
+
+        rules.mMax.above = sort(maxAbove, true);
+        rules.mMax.aboveRules = ruleLabels(maxAbove, labels);
+        rules.mMax.below = sort(maxBelow, false);
+        rules.mMax.belowRules = ruleLabels(maxBelow, labels);
+        rules.mMin.above = sort(minAbove, true);
+        rules.mMin.aboveRules = ruleLabels(minAbove, labels);
+        rules.mMin.below = sort(minBelow, false);
+        rules.mMin.belowRules = ruleLabels(minBelow, labels);
+        rules.mWind.above = sort(windAbove, true);
+        rules.mWind.aboveRules = ruleLabels(windAbove, labels);
+        rules.mWind.below = sort(windBelow, false);
+        rules.mWind.belowRules = ruleLabels(windBelow, labels);
+        rules.mCount = labels.size();
+        return rules;
+    }
+
+    // Sorts the (threshold, label index) pairs in place and returns the thresholds
+    private static double[] sort(ArrayList<double[]> entries, final boolean ascending) {
+        Collections.sort(entries, new Comparator<double[]>() {
+            @Override
+            public int compare(double[] lhs, double[] rhs) {
+                return ascending ? Double.compare(lhs[0], rhs[0]) : Double.compare(rhs[0], lhs[0]);
+            }
+        });
+        double[] thresholds = new double[entries.size()];
+        for (int i = 0; i < thresholds.length; i++) {
+            thresholds[i] = entries.get(i)[0];
+        }
+        return thresholds;
+    }
+
+    private static String[] ruleLabels(ArrayList<double[]> sortedEntries, ArrayList<String> labels) {
+        String[] result = new String[sortedEntries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = labels.get((int) sortedEntries.get(i)[1]);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of rules that were understood.
+     */
+    int size() {
+        return mCount;
+    }
+
+    /**
+     * Adds the rule text of every rule a day's forecast fires to {@code out}.  Temperatures are
+     * Celsius and wind is km/h, as stored in the database.
+     */
+    void match(int weatherId, double high, double low, double windSpeed, Collection<String> out) {
+        mMax.match(high, out);
+        mMin.match(low, out);
+        mWind.match(windSpeed, out);
+        int category = getCategory(weatherId);
+        if (category >= 0 && mCategoryRules[category] != null) {
+            out.add(mCategoryRules[category]);
+        }
+    }
+
+    // Maps an OpenWeatherMap condition code onto an index into CATEGORIES
+    private static int getCategory(int weatherId) {
+        // Where the rules have always differed from the icons: freezing rain is rain, and ash,
+        // squalls and tornadoes are in the 7xx atmosphere group with fog
+        switch (weatherId) {
+            case 511:
+                return CATEGORY_RAIN;
+            case 762:
+            case 771:
+            case 781:
+                return CATEGORY_FOG;
+            default:
+                return CONDITION_CATEGORIES[WeatherConditions.categoryFor(weatherId)];
+        }
+    }
+}
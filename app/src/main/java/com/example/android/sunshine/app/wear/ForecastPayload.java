@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.wear;
+
+import com.example.android.sunshine.core.ForecastWire;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * The forecast days sent to the watch face, encoded in the {@link ForecastWire} format.  The
+ * watch face decodes it in its WeatherForecast.
+ */
+final class ForecastPayload {
+
+    // How many days, starting from today, the watch gets
+    static final int MAX_DAYS = 7;
+
+    final int startDay;
+    final int[] weatherIds;
+    final int[] maxTemps;
+    final int[] minTemps;
+
+    ForecastPayload(int startDay, int[] weatherIds, int[] maxTemps, int[] minTemps) {
+        this.startDay = startDay;
+        this.weatherIds = weatherIds;
+        this.maxTemps = maxTemps;
+        this.minTemps = minTemps;
+    }
+
+    int getCount() {
+        return weatherIds.length;
+    }
+
+    /**
+     * @param base the days the watch already has, or null to send absolute values.
+     */
+    byte[] encode(int sequence, int baseSequence, ForecastPayload base) {
+        ByteArrayOutputStream out = ForecastWire.newPayloadStream(getCount());
+        ForecastWire.writeHeader(out, sequence, base != null ? baseSequence : 0, startDay,
+                getCount());
+        for (int i = 0; i < getCount(); i++) {
+            int baseIndex = base != null ? startDay + i - base.startDay : -1;
+            boolean inBase = base != null && baseIndex >= 0 && baseIndex < base.getCount();
+            ForecastWire.writeDay(out,
+                    weatherIds[i] - (inBase ? base.weatherIds[baseIndex] : 0),
+                    maxTemps[i] - (inBase ? base.maxTemps[baseIndex] : 0),
+                    minTemps[i] - (inBase ? base.minTemps[baseIndex] : 0));
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ForecastPayload)) {
+            return false;
+        }
+        ForecastPayload other = (ForecastPayload) o;
+        return startDay == other.startDay
+                && Arrays.equals(weatherIds, other.weatherIds)
+                && Arrays.equals(maxTemps, other.maxTemps)
+                && Arrays.equals(minTemps, other.minTemps);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = startDay;
+        result = 31 * result + Arrays.hashCode(weatherIds);
+        result = 31 * result + Arrays.hashCode(maxTemps);
+        result = 31 * result + Arrays.hashCode(minTemps);
+        return result;
+    }
+}
@@ -1,21 +1,33 @@
 package com.example.android.sunshine.app.wear;
 
 import android.content.Context;
-import android.database.Cursor;
+import android.content.SharedPreferences;
 import android.net.Uri;
 import android.os.Bundle;
+import android.text.TextUtils;
 import android.util.Log;
 
-import com.example.android.sunshine.app.Utility;
-import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.data.ForecastSnapshot;
+import com.example.android.sunshine.core.ForecastDays;
+import com.example.android.sunshine.core.ForecastWire;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataItemBuffer;
 import com.google.android.gms.wearable.DataMap;
+import com.google.android.gms.wearable.DataMapItem;
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.NodeApi;
 import com.google.android.gms.wearable.PutDataMapRequest;
 import com.google.android.gms.wearable.PutDataRequest;
 import com.google.android.gms.wearable.Wearable;
 
 import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by joaobiriba on 28/11/15.
@@ -24,25 +36,18 @@ public class WatchfaceUpdateHelper implements GoogleApiClient.ConnectionCallback
 
     private static final String LOG_TAG = WatchfaceUpdateHelper.class.getSimpleName();
 
-    public static final String PATH_WEATHER_DATA = "/weatherdata";
+    private static final long ACK_TIMEOUT_SECONDS = 5;
+    private static final long CONNECT_TIMEOUT_SECONDS = 5;
 
-    private static final String KEY_CONDITION = "WEATHER_CONDITION";
-    private static final String KEY_TEMP_MIN = "WEATHER_TEMP_MIN";
-    private static final String KEY_TEMP_MAX = "WEATHER_TEMP_MAX";
-    private static final String KEY_TEMP_UNIT = "WEATHER_TEMP_UNIT";
-
-    private static final String[] WEAR_WEATHER_PROJECTION = new String[] {
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-    };
-
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_MAX_TEMP = 1;
-    private static final int INDEX_MIN_TEMP = 2;
+    // What we last sent, so the next payload can be relative to it
+    private static final String SENT_PREFS = "wear_forecast";
+    private static final String KEY_SENT_SEQUENCE = "sequence";
+    private static final String KEY_SENT_START_DAY = "start_day";
+    private static final String KEY_SENT_WEATHER_IDS = "weather_ids";
+    private static final String KEY_SENT_MAX_TEMPS = "max_temps";
+    private static final String KEY_SENT_MIN_TEMPS = "min_temps";
 
     private GoogleApiClient mGoogleApiClient;
-    private WeatherDataMessage mWeatherDataMessage;
 
     private WeakReference<Context> mContextRef;
 
@@ -69,9 +74,28 @@ public class WatchfaceUpdateHelper implements GoogleApiClient.ConnectionCallback
         }
     }
 
+    /**
+     * Closes the connection to the wearable API.  Only for helpers made for a single update;
+     * {@link #doUpdate()} can't be called afterwards.
+     */
+    public void disconnect() {
+        if (mGoogleApiClient != null) {
+            mGoogleApiClient.disconnect();
+            mGoogleApiClient = null;
+        }
+    }
+
+    /**
+     * Sends the next days of the forecast to the watch face, relative to what every watch has
+     * acknowledged.  Waits for the connection if it isn't up yet and blocks while it reads the
+     * acknowledgements, so call it off the UI thread.
+     */
     public void doUpdate() {
         Log.i(LOG_TAG, "Updating wear");
 
+        if (mGoogleApiClient != null && !mGoogleApiClient.isConnected()) {
+            mGoogleApiClient.blockingConnect(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
         if(mGoogleApiClient == null
                 || !mGoogleApiClient.isConnected()) {
             Log.i(LOG_TAG, "No Google API connection => returning");
@@ -83,55 +107,147 @@ public class WatchfaceUpdateHelper implements GoogleApiClient.ConnectionCallback
             return;
         }
 
-        String locationQuery = Utility.getPreferredLocation(context);
+        // the sync has just published the forecast, no need to go back to the provider
+        ForecastPayload payload = buildPayload(ForecastSnapshot.get(context));
+        if (payload == null) {
+            return;
+        }
 
-        Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(locationQuery, System.currentTimeMillis());
+        SharedPreferences sent = context.getSharedPreferences(SENT_PREFS, Context.MODE_PRIVATE);
+        int lastSequence = sent.getInt(KEY_SENT_SEQUENCE, 0);
+        ForecastPayload lastPayload = loadSentPayload(sent);
 
-        // we'll query our contentProvider, as always
-        Cursor cursor = context.getContentResolver().query(weatherUri, WEAR_WEATHER_PROJECTION, null, null, null);
+        // Only send differences if every connected watch has the version they'd be applied to.
+        // Otherwise send absolute values, even for days that didn't change, so a watch that
+        // missed a version or lost its data catches up.
+        List<Node> nodes = getConnectedNodes();
+        boolean acknowledged = lastPayload != null && !nodes.isEmpty()
+                && allWatchesAcknowledged(nodes, lastSequence);
 
-        Log.i(LOG_TAG, "Querying weather data for wear");
+        //just to be sure not to use more power than needed
+        if (payload.equals(lastPayload) && (acknowledged || nodes.isEmpty())) {
+            Log.i(LOG_TAG, "no wear update needed");
+            return;
+        }
 
-        if (cursor.moveToFirst()) {
-            Log.i(LOG_TAG, "Got data");
-            int weatherId = cursor.getInt(INDEX_WEATHER_ID);
-            double high = cursor.getDouble(INDEX_MAX_TEMP);
-            double low = cursor.getDouble(INDEX_MIN_TEMP);
+        ForecastPayload base = acknowledged ? lastPayload : null;
+        int sequence = lastSequence + 1;
+        byte[] encoded = payload.encode(sequence, lastSequence, base);
 
-            boolean sendUpdate = true;
+        Log.i(LOG_TAG, "sending update to wear: " + encoded.length + " bytes"
+                + (base != null ? " relative to " + lastSequence : ""));
+        PutDataMapRequest mapRequest = PutDataMapRequest.create(ForecastWire.PATH_WEATHER_DATA);
+        mapRequest.getDataMap().putByteArray(ForecastWire.KEY_FORECAST, encoded);
+        PutDataRequest request = mapRequest.asPutDataRequest();
+        Wearable.DataApi.putDataItem(mGoogleApiClient, request);
 
-            WeatherDataMessage telegram = new WeatherDataMessage(
-                    "C",
-                    weatherId,
-                    high,
-                    low
-            );
+        saveSentPayload(sent, sequence, payload);
+    }
 
-            //just to be sure not to use more power than needed
-            if (telegram.equals(mWeatherDataMessage)) {
-                sendUpdate = false;
-            }
+    private static ForecastPayload buildPayload(ForecastSnapshot snapshot) {
+        int today = snapshot != null ? snapshot.getTodayIndex() : -1;
+        if (today < 0) {
+            return null;
+        }
+        int count = Math.min(ForecastPayload.MAX_DAYS, snapshot.getCount() - today);
+        int[] weatherIds = new int[count];
+        int[] maxTemps = new int[count];
+        int[] minTemps = new int[count];
+        for (int i = 0; i < count; i++) {
+            weatherIds[i] = snapshot.getWeatherId(today + i);
+            maxTemps[i] = ForecastWire.toTenths(snapshot.getMaxTemp(today + i));
+            minTemps[i] = ForecastWire.toTenths(snapshot.getMinTemp(today + i));
+        }
+        int startDay = ForecastDays.julianDay(snapshot.getDate(today), TimeZone.getDefault());
+        return new ForecastPayload(startDay, weatherIds, maxTemps, minTemps);
+    }
 
-            if(sendUpdate) {
-                Log.i(LOG_TAG, "sending update to wear");
-                PutDataMapRequest mapRequest = PutDataMapRequest.create(PATH_WEATHER_DATA);
-                DataMap dm = mapRequest.getDataMap();
-                dm.putInt(KEY_CONDITION, telegram.getWeatherConditionId());
-                dm.putDouble(KEY_TEMP_MIN, telegram.getTemperatureMin());
-                dm.putDouble(KEY_TEMP_MAX, telegram.getTemperatureMax());
-                dm.putString(KEY_TEMP_UNIT, telegram.getWeatherUnit());
+    private List<Node> getConnectedNodes() {
+        NodeApi.GetConnectedNodesResult result = Wearable.NodeApi
+                .getConnectedNodes(mGoogleApiClient)
+                .await(ACK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!result.getStatus().isSuccess()) {
+            return Collections.emptyList();
+        }
+        return result.getNodes();
+    }
 
-                PutDataRequest request = mapRequest.asPutDataRequest();
+    private boolean allWatchesAcknowledged(List<Node> nodes, int sequence) {
+        // No authority: the acknowledgements of every node, each under its own node id
+        Uri uri = new Uri.Builder().scheme(PutDataRequest.WEAR_URI_SCHEME)
+                .path(ForecastWire.PATH_WEATHER_ACK).build();
+        DataItemBuffer items = Wearable.DataApi.getDataItems(mGoogleApiClient, uri)
+                .await(ACK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        try {
+            if (!items.getStatus().isSuccess()) {
+                return false;
+            }
+            HashSet<String> acknowledged = new HashSet<>();
+            for (DataItem item : items) {
+                DataMap ack = DataMapItem.fromDataItem(item).getDataMap();
+                if (ack.getInt(ForecastWire.KEY_ACK_SEQUENCE, -1) == sequence) {
+                    acknowledged.add(item.getUri().getHost());
+                }
+            }
+            // A watch that never acknowledged anything isn't up to date either
+            for (Node node : nodes) {
+                if (!acknowledged.contains(node.getId())) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            items.release();
+        }
+    }
 
-                Wearable.DataApi.putDataItem(mGoogleApiClient, request);
+    private static ForecastPayload loadSentPayload(SharedPreferences sent) {
+        if (!sent.contains(KEY_SENT_START_DAY)) {
+            return null;
+        }
+        try {
+            return new ForecastPayload(sent.getInt(KEY_SENT_START_DAY, 0),
+                    parseInts(sent.getString(KEY_SENT_WEATHER_IDS, "")),
+                    parseInts(sent.getString(KEY_SENT_MAX_TEMPS, "")),
+                    parseInts(sent.getString(KEY_SENT_MIN_TEMPS, "")));
+        } catch (NumberFormatException e) {
+            Log.e(LOG_TAG, "Corrupt wear state", e);
+            return null;
+        }
+    }
+
+    private static void saveSentPayload(SharedPreferences sent, int sequence,
+                                        ForecastPayload payload) {
+        sent.edit()
+                .putInt(KEY_SENT_SEQUENCE, sequence)
+                .putInt(KEY_SENT_START_DAY, payload.startDay)
+                .putString(KEY_SENT_WEATHER_IDS, joinInts(payload.weatherIds))
+                .putString(KEY_SENT_MAX_TEMPS, joinInts(payload.maxTemps))
+                .putString(KEY_SENT_MIN_TEMPS, joinInts(payload.minTemps))
+                .commit();
+    }
 
-                mWeatherDataMessage = telegram;
-            } else {
-                Log.i(LOG_TAG, "no wear update needed");
+    private static String joinInts(int[] values) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(',');
             }
+            sb.append(values[i]);
+        }
+        return sb.toString();
+    }
 
+    private static int[] parseInts(String joined) {
+        if (joined.isEmpty()) {
+            return new int[0];
+        }
+        String[] parts = TextUtils.split(joined, ",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i]);
         }
-        cursor.close();
+        return values;
     }
 
     @Override
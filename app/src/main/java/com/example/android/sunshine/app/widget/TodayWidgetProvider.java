@@ -20,19 +20,28 @@ import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
 public class TodayWidgetProvider extends AppWidgetProvider {
 
     public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
-        context.startService(new Intent(context, TodayWidgetIntentService.class));
+        // The host asks for an update when it has no views for these widgets (e.g. after a
+        // reboot), so they must be pushed even if the weather hasn't changed.
+        WidgetRenderer.forgetRenderedState(context, appWidgetIds);
+        WidgetRefreshCoordinator.requestTodayRefresh(context, appWidgetIds);
+    }
+
+    @Override
+    public void onDeleted(Context context, int[] appWidgetIds) {
+        WidgetRenderer.forgetRenderedState(context, appWidgetIds);
     }
 
     @Override
     public void onAppWidgetOptionsChanged(Context context, AppWidgetManager appWidgetManager,
                                           int appWidgetId, Bundle newOptions) {
-        context.startService(new Intent(context, TodayWidgetIntentService.class));
+        WidgetRefreshCoordinator.requestTodayRefresh(context, new int[]{appWidgetId});
     }
 
     public void onReceive(@NonNull Context context, @NonNull Intent intent) {
         super.onReceive(context, intent);
         if (SunshineSyncAdapter.ACTION_DATA_UPDATED.equals(intent.getAction())) {
-            context.startService(new Intent(context, TodayWidgetIntentService.class));
+            WidgetRefreshCoordinator.requestDataRefresh(context,
+                    intent.getBooleanExtra(SunshineSyncAdapter.EXTRA_USER_REQUESTED, true));
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.SystemClock;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Merges widget refresh triggers into as few refresh passes as possible.
+ * <p/>
+ * Syncs, location changes and widget option changes can each fire several refreshes within a
+ * couple of seconds.  Every trigger only adds the widgets that need work to a persistent queue,
+ * where duplicates merge, and makes sure a pass is scheduled.  The pass drains the whole queue.
+ * Queue writes are applied asynchronously, since triggers mostly come from broadcast receivers on
+ * the main thread; only draining it waits for the disk.
+ * <p/>
+ * On Lollipop and up passes are {@link WidgetRefreshJobService} jobs: urgent work runs once the
+ * triggers have been quiet for {@link #COALESCE_WINDOW_MS}, but never later than
+ * {@link #MAX_DELAY_MS} after the first of them, so a steady stream of triggers can't hold it back
+ * forever.  Non-urgent work waits until the device is charging (or {@link #DEFERRED_DEADLINE_MS}
+ * at the latest) and is picked up early by any urgent pass.  Both jobs are persisted, so the
+ * queued work survives a reboot.  Older devices run every pass through
+ * {@link WidgetRefreshService}, with the same window and limit.
+ */
+final class WidgetRefreshCoordinator {
+
+    // Triggers closer together than this are merged into one pass.
+    static final long COALESCE_WINDOW_MS = 2000;
+
+    // Urgent work waits at most this long after its first trigger, however many follow.
+    static final long MAX_DELAY_MS = 10 * 1000;
+
+    // Non-urgent work never waits for the charger longer than this.
+    static final long DEFERRED_DEADLINE_MS = 30 * 60 * 1000;
+
+    static final int URGENT_JOB_ID = 1;
+    static final int DEFERRED_JOB_ID = 2;
+
+    private static final String QUEUE_PREFS = "widget_refresh_queue";
+    private static final String KEY_ALL_TODAY = "all_today";
+    private static final String KEY_TODAY_IDS = "today_ids";
+    private static final String KEY_DETAIL = "detail";
+    // SystemClock.elapsedRealtime() of the first urgent trigger since the last pass
+    private static final String KEY_FIRST_URGENT = "first_urgent";
+
+    private static final Object sLock = new Object();
+
+    // Only used by the WidgetRefreshService path.
+    private static long sFirstRequestTime;
+    private static long sLastRequestTime;
+    private static boolean sPassQueued;
+
+    /**
+     * The work collected for one refresh pass.
+     */
+    static final class Pass {
+        // Null when every Today widget needs to be refreshed.
+        final int[] todayWidgetIds;
+        final boolean refreshToday;
+        final boolean refreshDetail;
+
+        Pass(int[] todayWidgetIds, boolean refreshToday, boolean refreshDetail) {
+            this.todayWidgetIds = todayWidgetIds;
+            this.refreshToday = refreshToday;
+            this.refreshDetail = refreshDetail;
+        }
+    }
+
+    private WidgetRefreshCoordinator() {
+    }
+
+    /**
+     * The weather data changed: every widget needs to be refreshed.
+     *
+     * @param urgent false if the refresh can wait for the device to be charging.
+     */
+    static void requestDataRefresh(Context context, boolean urgent) {
+        synchronized (sLock) {
+            getQueue(context).edit()
+                    .putBoolean(KEY_ALL_TODAY, true)
+                    .remove(KEY_TODAY_IDS)
+                    .putBoolean(KEY_DETAIL, true)
+                    .apply();
+        }
+        schedulePass(context, urgent);
+    }
+
+    /**
+     * Only the given Today widgets need to be re-rendered, e.g. because they were resized.
+     */
+    static void requestTodayRefresh(Context context, int[] appWidgetIds) {
+        synchronized (sLock) {
+            addTodayIds(getQueue(context), appWidgetIds);
+        }
+        schedulePass(context, true);
+    }
+
+    /**
+     * Puts back the work of a pass that was stopped before it finished, merging it with whatever
+     * was queued since.  The caller makes sure another pass runs.
+     */
+    static void requeue(Context context, Pass pass) {
+        synchronized (sLock) {
+            SharedPreferences queue = getQueue(context);
+            if (pass.refreshToday) {
+                if (pass.todayWidgetIds == null) {
+                    queue.edit()
+                            .putBoolean(KEY_ALL_TODAY, true)
+                            .remove(KEY_TODAY_IDS)
+                            .apply();
+                } else {
+                    addTodayIds(queue, pass.todayWidgetIds);
+                }
+            }
+            if (pass.refreshDetail) {
+                queue.edit().putBoolean(KEY_DETAIL, true).apply();
+            }
+        }
+    }
+
+    // Call with sLock held.
+    private static void addTodayIds(SharedPreferences queue, int[] appWidgetIds) {
+        if (queue.getBoolean(KEY_ALL_TODAY, false)) {
+            return;
+        }
+        Set<String> ids = new HashSet<>(queue.getStringSet(KEY_TODAY_IDS, new HashSet<String>()));
+        for (int appWidgetId : appWidgetIds) {
+            ids.add(Integer.toString(appWidgetId));
+        }
+        queue.edit().putStringSet(KEY_TODAY_IDS, ids).apply();
+    }
+
+    private static void schedulePass(Context context, boolean urgent) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            scheduleJob(context, urgent);
+            return;
+        }
+        boolean startService;
+        synchronized (sLock) {
+            sLastRequestTime = SystemClock.elapsedRealtime();
+            if (!sPassQueued) {
+                sFirstRequestTime = sLastRequestTime;
+            }
+            startService = !sPassQueued;
+            sPassQueued = true;
+        }
+        if (startService) {
+            context.startService(new Intent(context, WidgetRefreshService.class));
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static void scheduleJob(Context context, boolean urgent) {
+        JobScheduler jobScheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        ComponentName jobService = new ComponentName(context, WidgetRefreshJobService.class);
+        if (urgent) {
+            // Scheduling the same job id again replaces the pending job, which also pushes it
+            // back until the triggers have been quiet for the whole window, or as far as the
+            // first trigger's limit allows.
+            long delay = urgentDelay(context);
+            jobScheduler.schedule(new JobInfo.Builder(URGENT_JOB_ID, jobService)
+                    .setMinimumLatency(delay)
+                    .setOverrideDeadline(delay)
+                    .setPersisted(true)
+                    .build());
+        } else if (!isJobPending(jobScheduler, DEFERRED_JOB_ID)) {
+            // Unlike the urgent job, keep the one that is already waiting so its deadline holds.
+            jobScheduler.schedule(new JobInfo.Builder(DEFERRED_JOB_ID, jobService)
+                    .setRequiresCharging(true)
+                    .setOverrideDeadline(DEFERRED_DEADLINE_MS)
+                    .setPersisted(true)
+                    .build());
+        }
+    }
+
+    /**
+     * @return how long the urgent job should wait from now, counting this trigger.
+     */
+    private static long urgentDelay(Context context) {
+        long now = SystemClock.elapsedRealtime();
+        synchronized (sLock) {
+            SharedPreferences queue = getQueue(context);
+            long first = queue.getLong(KEY_FIRST_URGENT, -1);
+            // A time ahead of the clock was saved before a reboot
+            if (first < 0 || first > now) {
+                first = now;
+                queue.edit().putLong(KEY_FIRST_URGENT, first).apply();
+            }
+            return Math.max(0, Math.min(COALESCE_WINDOW_MS, first + MAX_DELAY_MS - now));
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static boolean isJobPending(JobScheduler jobScheduler, int jobId) {
+        List<JobInfo> pendingJobs = jobScheduler.getAllPendingJobs();
+        for (JobInfo job : pendingJobs) {
+            if (job.getId() == jobId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Blocks until the triggers have been quiet for {@link #COALESCE_WINDOW_MS}, or the first of
+     * them is {@link #MAX_DELAY_MS} old, then hands back everything they asked for.  Only call
+     * this from {@link WidgetRefreshService}'s worker thread.
+     *
+     * @return the work for this pass, or null if there is nothing to do.
+     */
+    static Pass awaitPass(Context context) {
+        while (true) {
+            long wait;
+            synchronized (sLock) {
+                wait = Math.min(sLastRequestTime + COALESCE_WINDOW_MS,
+                        sFirstRequestTime + MAX_DELAY_MS) - SystemClock.elapsedRealtime();
+                if (wait <= 0) {
+                    sPassQueued = false;
+                    return takePass(context);
+                }
+            }
+            SystemClock.sleep(wait);
+        }
+    }
+
+    /**
+     * Empties the queue.
+     *
+     * @return everything that was queued, or null if there is nothing to do.
+     */
+    static Pass takePass(Context context) {
+        synchronized (sLock) {
+            SharedPreferences queue = getQueue(context);
+            boolean allToday = queue.getBoolean(KEY_ALL_TODAY, false);
+            Set<String> ids = queue.getStringSet(KEY_TODAY_IDS, null);
+            boolean refreshDetail = queue.getBoolean(KEY_DETAIL, false);
+            boolean refreshToday = allToday || (ids != null && !ids.isEmpty());
+            if (!refreshToday && !refreshDetail) {
+                queue.edit().remove(KEY_FIRST_URGENT).commit();
+                return null;
+            }
+            int[] todayIds = null;
+            if (!allToday && ids != null) {
+                todayIds = new int[ids.size()];
+                int i = 0;
+                for (String id : ids) {
+                    todayIds[i++] = Integer.parseInt(id);
+                }
+            }
+            queue.edit().clear().commit();
+            return new Pass(todayIds, refreshToday, refreshDetail);
+        }
+    }
+
+    private static SharedPreferences getQueue(Context context) {
+        return context.getSharedPreferences(QUEUE_PREFS, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.annotation.TargetApi;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.util.SparseArray;
+
+/**
+ * Runs the refresh passes collected by {@link WidgetRefreshCoordinator} as scheduled jobs, so the
+ * system can batch them with other work instead of starting our process for every trigger.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class WidgetRefreshJobService extends JobService {
+
+    // The running passes by job id; only touched on the main thread.
+    private final SparseArray<PassTask> mRunningPasses = new SparseArray<>();
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        if (params.getJobId() == WidgetRefreshCoordinator.URGENT_JOB_ID
+                && mRunningPasses.get(WidgetRefreshCoordinator.DEFERRED_JOB_ID) == null) {
+            // This pass drains the whole queue, including whatever the deferred job was waiting
+            // for.  A deferred pass that is already running is left to finish its own work.
+            JobScheduler jobScheduler =
+                    (JobScheduler) getSystemService(Context.JOB_SCHEDULER_SERVICE);
+            jobScheduler.cancel(WidgetRefreshCoordinator.DEFERRED_JOB_ID);
+        }
+        PassTask task = new PassTask(params);
+        mRunningPasses.put(params.getJobId(), task);
+        task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        PassTask task = mRunningPasses.get(params.getJobId());
+        if (task == null) {
+            return false;
+        }
+        mRunningPasses.remove(params.getJobId());
+        WidgetRefreshCoordinator.Pass pass;
+        synchronized (task) {
+            task.cancel(false);
+            pass = task.mPass;
+        }
+        // Whatever the pass took off the queue goes back, and the job runs again for it.
+        if (pass != null) {
+            WidgetRefreshCoordinator.requeue(this, pass);
+        }
+        return true;
+    }
+
+    private class PassTask extends AsyncTask<Void, Void, Void> {
+        private final JobParameters mParams;
+        // Set once the pass has been taken off the queue; guarded by this.
+        WidgetRefreshCoordinator.Pass mPass;
+
+        PassTask(JobParameters params) {
+            mParams = params;
+        }
+
+        @Override
+        protected Void doInBackground(Void... voids) {
+            WidgetRefreshCoordinator.Pass pass;
+            synchronized (this) {
+                // A stopped job leaves the queue alone.
+                if (isCancelled()) {
+                    return null;
+                }
+                pass = WidgetRefreshCoordinator.takePass(WidgetRefreshJobService.this);
+                mPass = pass;
+            }
+            if (pass != null) {
+                WidgetRenderer.runPass(WidgetRefreshJobService.this, pass);
+            }
+            return null;
+        }
+
+        @Override
+        protected void onPostExecute(Void result) {
+            mRunningPasses.remove(mParams.getJobId());
+            jobFinished(mParams, false);
+        }
+    }
+}
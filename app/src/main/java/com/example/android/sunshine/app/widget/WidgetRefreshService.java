@@ -0,0 +1,27 @@
+package com.example.android.sunshine.app.widget;
+
+/**
+ * Created by joaobiriba on 17/09/15.
+ */
+
+import android.app.IntentService;
+import android.content.Intent;
+
+/**
+ * IntentService which runs the refresh passes collected by {@link WidgetRefreshCoordinator} on
+ * devices without JobScheduler.  Lollipop and up use {@link WidgetRefreshJobService} instead.
+ */
+public class WidgetRefreshService extends IntentService {
+
+    public WidgetRefreshService() {
+        super("WidgetRefreshService");
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        WidgetRefreshCoordinator.Pass pass = WidgetRefreshCoordinator.awaitPass(this);
+        if (pass != null) {
+            WidgetRenderer.runPass(this, pass);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.annotation.TargetApi;
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+import android.widget.RemoteViews;
+
+import com.example.android.sunshine.app.MainActivity;
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.ForecastSnapshot;
+
+import java.util.Arrays;
+
+/**
+ * Carries out one widget refresh pass: re-renders the Today widgets that need it and tells the
+ * Detail widgets their data changed.  It doesn't matter which executor runs the pass, as long as
+ * it is off the main thread.
+ */
+final class WidgetRenderer {
+    // Remembers a hash of what each Today widget last showed, keyed by widget id
+    private static final String RENDERED_STATE_PREFS = "today_widget_state";
+
+    private WidgetRenderer() {
+    }
+
+    static void runPass(Context context, WidgetRefreshCoordinator.Pass pass) {
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+        if (pass.refreshDetail) {
+            int[] detailWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(context,
+                    DetailWidgetProvider.class));
+            appWidgetManager.notifyAppWidgetViewDataChanged(detailWidgetIds, R.id.widget_list);
+        }
+        if (pass.refreshToday) {
+            int[] todayWidgetIds = pass.todayWidgetIds != null
+                    ? pass.todayWidgetIds
+                    : appWidgetManager.getAppWidgetIds(new ComponentName(context,
+                            TodayWidgetProvider.class));
+            updateTodayWidgets(context, appWidgetManager, todayWidgetIds);
+        }
+    }
+
+    private static void updateTodayWidgets(Context context, AppWidgetManager appWidgetManager,
+                                           int[] appWidgetIds) {
+        // Get today's data from the snapshot the last sync published
+        ForecastSnapshot snapshot = ForecastSnapshot.get(context);
+        int today = snapshot != null ? snapshot.getTodayIndex() : -1;
+        if (today < 0) {
+            return;
+        }
+
+        int weatherId = snapshot.getWeatherId(today);
+        int weatherArtResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
+        String description = snapshot.getDescription(today);
+        double maxTemp = snapshot.getMaxTemp(today);
+        double minTemp = snapshot.getMinTemp(today);
+        String formattedMaxTemperature = Utility.formatTemperature(context, maxTemp);
+        String formattedMinTemperature = Utility.formatTemperature(context, minTemp);
+
+        SharedPreferences renderedState = context.getSharedPreferences(RENDERED_STATE_PREFS,
+                Context.MODE_PRIVATE);
+        SharedPreferences.Editor renderedStateEditor = renderedState.edit();
+        boolean renderedStateChanged = false;
+
+        // Perform this loop procedure for each Today widget
+        for (int appWidgetId : appWidgetIds) {
+            // Find the correct layout based on the widget's width
+            int widgetWidth = getWidgetWidth(context, appWidgetManager, appWidgetId);
+            int defaultWidth = context.getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
+            int largeWidth = context.getResources().getDimensionPixelSize(R.dimen.widget_today_large_width);
+            int layoutId;
+            if (widgetWidth >= largeWidth) {
+                layoutId = R.layout.widget_today_large;
+            } else if (widgetWidth >= defaultWidth) {
+                layoutId = R.layout.widget_today;
+            } else {
+                layoutId = R.layout.widget_today_small;
+            }
+
+            // Every push makes the launcher redraw in its own process, so skip widgets that
+            // would show exactly what they already show.  The formatted temperatures carry the
+            // unit, and the layout stands for the size bucket.
+            String stateKey = Integer.toString(appWidgetId);
+            int contentHash = Arrays.hashCode(new Object[]{layoutId, weatherArtResourceId,
+                    description, formattedMaxTemperature, formattedMinTemperature});
+            if (renderedState.contains(stateKey)
+                    && renderedState.getInt(stateKey, 0) == contentHash) {
+                continue;
+            }
+
+            RemoteViews views = new RemoteViews(context.getPackageName(), layoutId);
+
+            // Add the data to the RemoteViews
+            views.setImageViewResource(R.id.widget_icon, weatherArtResourceId);
+            // Content Descriptions for RemoteViews were only added in ICS MR1
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
+                setRemoteContentDescription(views, description);
+            }
+            views.setTextViewText(R.id.widget_description, description);
+            views.setTextViewText(R.id.widget_high_temperature, formattedMaxTemperature);
+            views.setTextViewText(R.id.widget_low_temperature, formattedMinTemperature);
+
+            // Create an Intent to launch MainActivity
+            Intent launchIntent = new Intent(context, MainActivity.class);
+            PendingIntent pendingIntent = PendingIntent.getActivity(context, 0, launchIntent, 0);
+            views.setOnClickPendingIntent(R.id.widget, pendingIntent);
+
+            // Tell the AppWidgetManager to perform an update on the current app widget
+            appWidgetManager.updateAppWidget(appWidgetId, views);
+            renderedStateEditor.putInt(stateKey, contentHash);
+            renderedStateChanged = true;
+        }
+        if (renderedStateChanged) {
+            renderedStateEditor.apply();
+        }
+    }
+
+    /**
+     * Forgets what the given Today widgets were last rendered with, so the next pass pushes to
+     * them even if the content is unchanged.  Call it whenever the host may have lost their
+     * views, and when widgets are deleted.
+     */
+    static void forgetRenderedState(Context context, int[] appWidgetIds) {
+        SharedPreferences.Editor editor = context.getSharedPreferences(RENDERED_STATE_PREFS,
+                Context.MODE_PRIVATE).edit();
+        for (int appWidgetId : appWidgetIds) {
+            editor.remove(Integer.toString(appWidgetId));
+        }
+        editor.apply();
+    }
+
+    private static int getWidgetWidth(Context context, AppWidgetManager appWidgetManager,
+                                      int appWidgetId) {
+        // Prior to Jelly Bean, widgets were always their default size
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return context.getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
+        }
+        // For Jelly Bean and higher devices, widgets can be resized - the current size can be
+        // retrieved from the newly added App Widget Options
+        return getWidgetWidthFromOptions(context, appWidgetManager, appWidgetId);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static int getWidgetWidthFromOptions(Context context,
+                                                 AppWidgetManager appWidgetManager,
+                                                 int appWidgetId) {
+        Bundle options = appWidgetManager.getAppWidgetOptions(appWidgetId);
+        if (options.containsKey(AppWidgetManager.OPTION_APPWIDGET_MIN_WIDTH)) {
+            int minWidthDp = options.getInt(AppWidgetManager.OPTION_APPWIDGET_MIN_WIDTH);
+            // The width returned is in dp, but we'll convert it to pixels to match the other widths
+            DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
+            return (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, minWidthDp,
+                    displayMetrics);
+        }
+        return  context.getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1)
+    private static void setRemoteContentDescription(RemoteViews views, String description) {
+        views.setContentDescription(R.id.widget_icon, description);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * The daily forecast {@link ForecastParser} reads out of an OpenWeatherMap response, kept in
+ * parallel arrays that are reused from one sync to the next.  Temperatures are Celsius and wind
+ * speeds km/h, as requested from the API.
+ */
+public final class DailyForecast {
+
+    /**
+     * The message code when the response didn't have one.
+     */
+    public static final int CODE_NONE = -1;
+
+    int mMessageCode = CODE_NONE;
+    String mCityName;
+    double mLatitude;
+    double mLongitude;
+
+    int mCount;
+    int[] mWeatherIds;
+    String[] mDescriptions;
+    double[] mMaxTemps;
+    double[] mMinTemps;
+    double[] mPressures;
+    int[] mHumidities;
+    double[] mWindSpeeds;
+    double[] mWindDirections;
+
+    public DailyForecast(int capacity) {
+        allocate(capacity);
+    }
+
+    void clear() {
+        mMessageCode = CODE_NONE;
+        mCount = 0;
+    }
+
+    // Makes room for another day at index, keeping the days before it
+    void ensureDay(int index) {
+        if (index < mWeatherIds.length) {
+            return;
+        }
+        int[] weatherIds = mWeatherIds;
+        String[] descriptions = mDescriptions;
+        double[] maxTemps = mMaxTemps;
+        double[] minTemps = mMinTemps;
+        double[] pressures = mPressures;
+        int[] humidities = mHumidities;
+        double[] windSpeeds = mWindSpeeds;
+        double[] windDirections = mWindDirections;
+        allocate(Math.max(index + 1, weatherIds.length * 2));
+        System.arraycopy(weatherIds, 0, mWeatherIds, 0, index);
+        System.arraycopy(descriptions, 0, mDescriptions, 0, index);
+        System.arraycopy(maxTemps, 0, mMaxTemps, 0, index);
+        System.arraycopy(minTemps, 0, mMinTemps, 0, index);
+        System.arraycopy(pressures, 0, mPressures, 0, index);
+        System.arraycopy(humidities, 0, mHumidities, 0, index);
+        System.arraycopy(windSpeeds, 0, mWindSpeeds, 0, index);
+        System.arraycopy(windDirections, 0, mWindDirections, 0, index);
+    }
+
+    private void allocate(int capacity) {
+        mWeatherIds = new int[capacity];
+        mDescriptions = new String[capacity];
+        mMaxTemps = new double[capacity];
+        mMinTemps = new double[capacity];
+        mPressures = new double[capacity];
+        mHumidities = new int[capacity];
+        mWindSpeeds = new double[capacity];
+        mWindDirections = new double[capacity];
+    }
+
+    /**
+     * @return the "cod" the API answered with, or {@link #CODE_NONE}; the other values are only
+     * meaningful if this is {@link #CODE_NONE} or 200.
+     */
+    public int getMessageCode() {
+        return mMessageCode;
+    }
+
+    public String getCityName() {
+        return mCityName;
+    }
+
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    public double getLongitude() {
+        return mLongitude;
+    }
+
+    /**
+     * @return how many days there are; the first is today where the city is.
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    public int getWeatherId(int day) {
+        return mWeatherIds[day];
+    }
+
+    public String getDescription(int day) {
+        return mDescriptions[day];
+    }
+
+    public double getMaxTemp(int day) {
+        return mMaxTemps[day];
+    }
+
+    public double getMinTemp(int day) {
+        return mMinTemps[day];
+    }
+
+    public double getPressure(int day) {
+        return mPressures[day];
+    }
+
+    public int getHumidity(int day) {
+        return mHumidities[day];
+    }
+
+    public double getWindSpeed(int day) {
+        return mWindSpeeds[day];
+    }
+
+    public double getWindDirection(int day) {
+        return mWindDirections[day];
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.TimeZone;
+
+/**
+ * The day arithmetic forecasts are keyed by.  Days are Julian day numbers of the local date, the
+ * same numbers android.text.format.Time uses, and a day's date in the database is the moment it
+ * starts in the local time zone.  None of this allocates, unlike going through a Time or Calendar.
+ */
+public final class ForecastDays {
+
+    public static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000L;
+
+    // The Julian day of January 1, 1970
+    private static final int EPOCH_JULIAN_DAY = 2440588;
+
+    private ForecastDays() {
+    }
+
+    /**
+     * @param offsetMillis the local time zone's offset from UTC at {@code millis}.
+     * @return the Julian day of the local date at {@code millis}.
+     */
+    public static int julianDay(long millis, long offsetMillis) {
+        return (int) floorDiv(millis + offsetMillis, DAY_IN_MILLIS) + EPOCH_JULIAN_DAY;
+    }
+
+    /**
+     * @return the Julian day of the date in {@code zone} at {@code millis}.
+     */
+    public static int julianDay(long millis, TimeZone zone) {
+        return julianDay(millis, zone.getOffset(millis));
+    }
+
+    /**
+     * @return the moment the given Julian day starts in {@code zone}.
+     */
+    public static long startOfJulianDay(int julianDay, TimeZone zone) {
+        long localMidnight = (julianDay - EPOCH_JULIAN_DAY) * DAY_IN_MILLIS;
+        // Guess with the offset at UTC midnight, then correct for a change of offset in between
+        long start = localMidnight - zone.getOffset(localMidnight);
+        start = localMidnight - zone.getOffset(start);
+        if (julianDay(start, zone) != julianDay) {
+            // Midnight itself was skipped by a daylight saving change, so that landed just
+            // before it; the day starts when the clocks jump
+            start = localMidnight - zone.getOffset(start);
+        }
+        return start;
+    }
+
+    /**
+     * @return the moment the day containing {@code millis} starts in {@code zone}.
+     */
+    public static long startOfDay(long millis, TimeZone zone) {
+        return startOfJulianDay(julianDay(millis, zone), zone);
+    }
+
+    private static long floorDiv(long x, long y) {
+        long quotient = x / y;
+        return (x % y != 0 && (x ^ y) < 0) ? quotient - 1 : quotient;
+    }
+}
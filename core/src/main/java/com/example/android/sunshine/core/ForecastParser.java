@@ -0,0 +1,563 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+
+/**
+ * Reads OpenWeatherMap's daily forecast response straight off the connection into a
+ * {@link DailyForecast}.  Instead of building the whole response as a string and then a tree of
+ * JSON objects, it streams through a fixed buffer, picks out the fields Sunshine stores and skips
+ * the rest, so a sync only allocates the few strings that are new since the last one.
+ * <p/>
+ * Like org.json, numbers sent as strings are accepted, as the API sends "cod" that way.
+ */
+public final class ForecastParser {
+
+    private static final int BUFFER_SIZE = 4096;
+
+    // Descriptions and the city name repeat from one sync to the next; keep the strings seen
+    private static final int MAX_STRINGS = 32;
+
+    private static final int CODE_OK = 200;
+
+    // The fields a day can't do without
+    private static final int DAY_PRESSURE = 1;
+    private static final int DAY_HUMIDITY = 1 << 1;
+    private static final int DAY_WIND_SPEED = 1 << 2;
+    private static final int DAY_WIND_DIRECTION = 1 << 3;
+    private static final int DAY_MAX = 1 << 4;
+    private static final int DAY_MIN = 1 << 5;
+    private static final int DAY_WEATHER_ID = 1 << 6;
+    private static final int DAY_DESCRIPTION = 1 << 7;
+    private static final int DAY_COMPLETE = (1 << 8) - 1;
+
+    private static final int CITY_NAME = 1;
+    private static final int CITY_LATITUDE = 1 << 1;
+    private static final int CITY_LONGITUDE = 1 << 2;
+    private static final int CITY_COMPLETE = (1 << 3) - 1;
+
+    // Longer mantissas and larger exponents than this aren't exact as doubles
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final char[] mBuffer = new char[BUFFER_SIZE];
+    private Reader mReader;
+    private int mPosition;
+    private int mLimit;
+    // How many characters came before the buffer, for error offsets
+    private long mConsumed;
+
+    // The last string or number read
+    private char[] mText = new char[64];
+    private int mTextLength;
+
+    private final String[] mStrings = new String[MAX_STRINGS];
+    private int mStringCount;
+
+    /**
+     * Parses a response into {@code out}, replacing what it held.  If the response has a message
+     * code other than 200, the rest of it isn't required.
+     *
+     * @return false if the response was empty.
+     * @throws ParseException if the response isn't JSON, or lacks a field Sunshine stores.
+     */
+    public boolean parse(Reader in, DailyForecast out) throws IOException, ParseException {
+        mReader = in;
+        mPosition = 0;
+        mLimit = 0;
+        mConsumed = 0;
+        out.clear();
+        try {
+            if (peek() == -1) {
+                return false;
+            }
+            parseRoot(out);
+            if (peek() != -1) {
+                throw error("Trailing characters");
+            }
+            return true;
+        } finally {
+            mReader = null;
+        }
+    }
+
+    private void parseRoot(DailyForecast out) throws IOException, ParseException {
+        boolean hasCity = false;
+        boolean hasList = false;
+        for (boolean more = beginObject(); more; more = nextKey()) {
+            if (keyIs("cod")) {
+                out.mMessageCode = readInt();
+            } else if (keyIs("city")) {
+                parseCity(out);
+                hasCity = true;
+            } else if (keyIs("list")) {
+                parseList(out);
+                hasList = true;
+            } else {
+                skipValue();
+            }
+        }
+        int code = out.mMessageCode;
+        if ((code == DailyForecast.CODE_NONE || code == CODE_OK) && !(hasCity && hasList)) {
+            throw error("No city or list");
+        }
+    }
+
+    private void parseCity(DailyForecast out) throws IOException, ParseException {
+        int found = 0;
+        for (boolean more = beginObject(); more; more = nextKey()) {
+            if (keyIs("name")) {
+                readString();
+                out.mCityName = textAsString();
+                found |= CITY_NAME;
+            } else if (keyIs("coord")) {
+                for (boolean coord = beginObject(); coord; coord = nextKey()) {
+                    if (keyIs("lat")) {
+                        out.mLatitude = readDouble();
+                        found |= CITY_LATITUDE;
+                    } else if (keyIs("lon")) {
+                        out.mLongitude = readDouble();
+                        found |= CITY_LONGITUDE;
+                    } else {
+                        skipValue();
+                    }
+                }
+            } else {
+                skipValue();
+            }
+        }
+        if (found != CITY_COMPLETE) {
+            throw error("City without a name or coordinates");
+        }
+    }
+
+    private void parseList(DailyForecast out) throws IOException, ParseException {
+        int day = 0;
+        for (boolean more = beginArray(); more; more = nextElement()) {
+            out.ensureDay(day);
+            parseDay(out, day);
+            out.mCount = ++day;
+        }
+    }
+
+    private void parseDay(DailyForecast out, int day) throws IOException, ParseException {
+        int found = 0;
+        for (boolean more = beginObject(); more; more = nextKey()) {
+            if (keyIs("pressure")) {
+                out.mPressures[day] = readDouble();
+                found |= DAY_PRESSURE;
+            } else if (keyIs("humidity")) {
+                out.mHumidities[day] = readInt();
+                found |= DAY_HUMIDITY;
+            } else if (keyIs("speed")) {
+                out.mWindSpeeds[day] = readDouble();
+                found |= DAY_WIND_SPEED;
+            } else if (keyIs("deg")) {
+                out.mWindDirections[day] = readDouble();
+                found |= DAY_WIND_DIRECTION;
+            } else if (keyIs("temp")) {
+                // All temperatures are children of the "temp" object
+                for (boolean temp = beginObject(); temp; temp = nextKey()) {
+                    if (keyIs("max")) {
+                        out.mMaxTemps[day] = readDouble();
+                        found |= DAY_MAX;
+                    } else if (keyIs("min")) {
+                        out.mMinTemps[day] = readDouble();
+                        found |= DAY_MIN;
+                    } else {
+                        skipValue();
+                    }
+                }
+            } else if (keyIs("weather")) {
+                // Only the first condition is used; the array is one element long anyway
+                for (boolean weather = beginArray(); weather; weather = nextElement()) {
+                    if ((found & (DAY_WEATHER_ID | DAY_DESCRIPTION)) != 0) {
+                        skipValue();
+                    } else {
+                        found |= parseWeather(out, day);
+                    }
+                }
+            } else {
+                skipValue();
+            }
+        }
+        if (found != DAY_COMPLETE) {
+            throw error("Day " + day + " is incomplete");
+        }
+    }
+
+    private int parseWeather(DailyForecast out, int day) throws IOException, ParseException {
+        int found = 0;
+        for (boolean more = beginObject(); more; more = nextKey()) {
+            if (keyIs("id")) {
+                out.mWeatherIds[day] = readInt();
+                found |= DAY_WEATHER_ID;
+            } else if (keyIs("main")) {
+                readString();
+                out.mDescriptions[day] = textAsString();
+                found |= DAY_DESCRIPTION;
+            } else {
+                skipValue();
+            }
+        }
+        return found;
+    }
+
+    // Reads the start of an object and its first key; false if it is empty
+    private boolean beginObject() throws IOException, ParseException {
+        expect('{');
+        if (peek() == '}') {
+            mPosition++;
+            return false;
+        }
+        readKey();
+        return true;
+    }
+
+    // Reads the next key after a member's value; false at the end of the object
+    private boolean nextKey() throws IOException, ParseException {
+        int c = read();
+        if (c == ',') {
+            readKey();
+            return true;
+        } else if (c == '}') {
+            return false;
+        }
+        throw error("Expected ',' or '}'");
+    }
+
+    private void readKey() throws IOException, ParseException {
+        readString();
+        expect(':');
+    }
+
+    private boolean keyIs(String key) {
+        return textEquals(key);
+    }
+
+    private boolean beginArray() throws IOException, ParseException {
+        expect('[');
+        if (peek() == ']') {
+            mPosition++;
+            return false;
+        }
+        return true;
+    }
+
+    private boolean nextElement() throws IOException, ParseException {
+        int c = read();
+        if (c == ',') {
+            return true;
+        } else if (c == ']') {
+            return false;
+        }
+        throw error("Expected ',' or ']'");
+    }
+
+    private void skipValue() throws IOException, ParseException {
+        switch (peek()) {
+            case '{':
+                for (boolean more = beginObject(); more; more = nextKey()) {
+                    skipValue();
+                }
+                break;
+            case '[':
+                for (boolean more = beginArray(); more; more = nextElement()) {
+                    skipValue();
+                }
+                break;
+            case '"':
+                readString();
+                break;
+            case 't':
+                expectWord("true");
+                break;
+            case 'f':
+                expectWord("false");
+                break;
+            case 'n':
+                expectWord("null");
+                break;
+            default:
+                readNumberText();
+                break;
+        }
+    }
+
+    private int readInt() throws IOException, ParseException {
+        return (int) readDouble();
+    }
+
+    private double readDouble() throws IOException, ParseException {
+        if (peek() == '"') {
+            readString();
+        } else {
+            readNumberText();
+        }
+        return parseNumber();
+    }
+
+    private void readNumberText() throws IOException, ParseException {
+        peek();
+        mTextLength = 0;
+        for (int c = peekRaw(); (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.'
+                || c == 'e' || c == 'E'; c = peekRaw()) {
+            appendText((char) c);
+            mPosition++;
+        }
+        if (mTextLength == 0) {
+            throw error("Expected a value");
+        }
+    }
+
+    // Converts the text read to a double, without allocating unless it has too many digits
+    private double parseNumber() throws ParseException {
+        char[] text = mText;
+        int length = mTextLength;
+        int i = 0;
+        boolean negative = false;
+        if (i < length && (text[i] == '-' || text[i] == '+')) {
+            negative = text[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean exact = true;
+        int integerStart = i;
+        for (; i < length && text[i] >= '0' && text[i] <= '9'; i++) {
+            if (digits < MAX_EXACT_DIGITS) {
+                mantissa = mantissa * 10 + (text[i] - '0');
+                digits += mantissa != 0 ? 1 : 0;
+            } else {
+                exact = false;
+            }
+        }
+        boolean hasDigits = i > integerStart;
+        if (i < length && text[i] == '.') {
+            int fractionStart = ++i;
+            for (; i < length && text[i] >= '0' && text[i] <= '9'; i++) {
+                if (digits < MAX_EXACT_DIGITS) {
+                    mantissa = mantissa * 10 + (text[i] - '0');
+                    digits += mantissa != 0 ? 1 : 0;
+                    scale--;
+                } else {
+                    exact = false;
+                }
+            }
+            hasDigits |= i > fractionStart;
+        }
+        if (!hasDigits) {
+            throw error("Not a number");
+        }
+        if (i < length && (text[i] == 'e' || text[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < length && (text[i] == '-' || text[i] == '+')) {
+                negativeExponent = text[i] == '-';
+                i++;
+            }
+            int exponentStart = i;
+            int exponent = 0;
+            for (; i < length && text[i] >= '0' && text[i] <= '9'; i++) {
+                exponent = Math.min(exponent * 10 + (text[i] - '0'), 1000);
+            }
+            if (i == exponentStart) {
+                throw error("Not a number");
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        if (i != length) {
+            throw error("Not a number");
+        }
+
+        if (!exact || scale >= POWERS_OF_TEN.length || -scale >= POWERS_OF_TEN.length) {
+            try {
+                return Double.parseDouble(new String(text, 0, length));
+            } catch (NumberFormatException e) {
+                throw error("Not a number");
+            }
+        }
+        // Both are exact doubles, so one multiplication or division rounds correctly
+        double value = scale < 0 ? mantissa / POWERS_OF_TEN[-scale]
+                : mantissa * POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    private void readString() throws IOException, ParseException {
+        expect('"');
+        mTextLength = 0;
+        while (true) {
+            int c = readRaw();
+            if (c == '"') {
+                return;
+            } else if (c == -1) {
+                throw error("Unterminated string");
+            } else if (c == '\\') {
+                c = readRaw();
+                switch (c) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        break;
+                    case 'b':
+                        c = '\b';
+                        break;
+                    case 'f':
+                        c = '\f';
+                        break;
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'u':
+                        c = readHexChar();
+                        break;
+                    default:
+                        throw error("Bad escape");
+                }
+            }
+            appendText((char) c);
+        }
+    }
+
+    private int readHexChar() throws IOException, ParseException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(readRaw(), 16);
+            if (digit < 0) {
+                throw error("Bad escape");
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    private void appendText(char c) {
+        if (mTextLength == mText.length) {
+            char[] text = new char[mText.length * 2];
+            System.arraycopy(mText, 0, text, 0, mTextLength);
+            mText = text;
+        }
+        mText[mTextLength++] = c;
+    }
+
+    private boolean textEquals(String s) {
+        if (s.length() != mTextLength) {
+            return false;
+        }
+        for (int i = 0; i < mTextLength; i++) {
+            if (s.charAt(i) != mText[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The text read as a string, reusing one from an earlier parse if it has the same characters
+    private String textAsString() {
+        for (int i = 0; i < mStringCount; i++) {
+            if (textEquals(mStrings[i])) {
+                return mStrings[i];
+            }
+        }
+        String s = new String(mText, 0, mTextLength);
+        if (mStringCount < MAX_STRINGS) {
+            mStrings[mStringCount++] = s;
+        }
+        return s;
+    }
+
+    private void expectWord(String word) throws IOException, ParseException {
+        peek();
+        for (int i = 0; i < word.length(); i++) {
+            if (readRaw() != word.charAt(i)) {
+                throw error("Expected " + word);
+            }
+        }
+    }
+
+    private void expect(char expected) throws IOException, ParseException {
+        if (read() != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+    }
+
+    // The next character that isn't whitespace, or -1 at the end
+    private int read() throws IOException {
+        int c = peek();
+        if (c != -1) {
+            mPosition++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        while (true) {
+            int c = peekRaw();
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+            mPosition++;
+        }
+    }
+
+    private int readRaw() throws IOException {
+        int c = peekRaw();
+        if (c != -1) {
+            mPosition++;
+        }
+        return c;
+    }
+
+    private int peekRaw() throws IOException {
+        if (mPosition == mLimit && !fill()) {
+            return -1;
+        }
+        return mBuffer[mPosition];
+    }
+
+    private boolean fill() throws IOException {
+        mConsumed += mLimit;
+        mPosition = 0;
+        mLimit = 0;
+        int count = mReader.read(mBuffer, 0, mBuffer.length);
+        if (count <= 0) {
+            return false;
+        }
+        mLimit = count;
+        return true;
+    }
+
+    private ParseException error(String message) {
+        return new ParseException(message, (int) (mConsumed + mPosition));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * What the phone and the watch agree on to exchange the forecast: the data item paths and keys,
+ * and the binary payload.  All payload values are varints, signed ones zig-zag encoded:
+ * <pre>
+ * byte   format version
+ * varint sequence        this payload's version, counting up from 1
+ * varint base sequence   the version the days are relative to, or 0 for absolute values
+ * varint start day       Julian day of the first day
+ * varint day count
+ * per day: zig-zag weather id, max and min temperature in tenths of a degree Celsius
+ * </pre>
+ * Each day value is the difference from the base version's value for the same date (or from 0 if
+ * the base doesn't have that date), so an unchanged forecast costs a single byte per value.
+ */
+public final class ForecastWire {
+
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * The path of the data item the phone puts the forecast in.
+     */
+    public static final String PATH_WEATHER_DATA = "/weatherdata";
+
+    /**
+     * The path of the data item in which the watch acknowledges the forecast it has.
+     */
+    public static final String PATH_WEATHER_ACK = "/weatherdata_ack";
+
+    /**
+     * The byte array key of the payload in {@link #PATH_WEATHER_DATA}.
+     */
+    public static final String KEY_FORECAST = "WEATHER_FORECAST";
+
+    /**
+     * The int key of the acknowledged sequence in {@link #PATH_WEATHER_ACK}.
+     */
+    public static final String KEY_ACK_SEQUENCE = "WEATHER_ACK_SEQUENCE";
+
+    // The header is at most a byte and four five-byte varints, a day three five-byte varints
+    private static final int MAX_HEADER_SIZE = 21;
+    private static final int MAX_DAY_SIZE = 15;
+
+    private ForecastWire() {
+    }
+
+    /**
+     * @return the temperature as sent, in tenths of a degree.
+     */
+    public static int toTenths(double temperature) {
+        return (int) Math.round(temperature * 10);
+    }
+
+    public static float fromTenths(int tenths) {
+        return tenths / 10f;
+    }
+
+    /**
+     * @return a stream large enough for a payload of {@code count} days.
+     */
+    public static ByteArrayOutputStream newPayloadStream(int count) {
+        return new ByteArrayOutputStream(MAX_HEADER_SIZE + count * MAX_DAY_SIZE);
+    }
+
+    /**
+     * Starts a payload; {@code count} days are to follow.
+     *
+     * @param baseSequence the version the days are relative to, or 0 for absolute values.
+     */
+    public static void writeHeader(ByteArrayOutputStream out, int sequence, int baseSequence,
+                                   int startDay, int count) {
+        out.write(FORMAT_VERSION);
+        writeVarint(out, sequence);
+        writeVarint(out, baseSequence);
+        writeVarint(out, startDay);
+        writeVarint(out, count);
+    }
+
+    /**
+     * Writes one day, each value already relative to the base if there is one.
+     */
+    public static void writeDay(ByteArrayOutputStream out, int weatherId, int maxTemp,
+                                int minTemp) {
+        writeVarint(out, zigZagEncode(weatherId));
+        writeVarint(out, zigZagEncode(maxTemp));
+        writeVarint(out, zigZagEncode(minTemp));
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    public static int zigZagEncode(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    public static int zigZagDecode(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
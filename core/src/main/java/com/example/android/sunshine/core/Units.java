@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * Conversions between the metric units the forecast is stored in and the imperial ones a user
+ * may prefer.
+ */
+public final class Units {
+
+    private static final double KMH_PER_MPH = 1.609344;
+
+    private static final String[] COMPASS_POINTS = {"N", "NE", "E", "SE", "S", "SW", "W", "NW"};
+    private static final String COMPASS_UNKNOWN = "Unknown";
+
+    private Units() {
+    }
+
+    public static double celsiusToFahrenheit(double celsius) {
+        return celsius * 1.8 + 32;
+    }
+
+    public static double fahrenheitToCelsius(double fahrenheit) {
+        return (fahrenheit - 32) * 5 / 9;
+    }
+
+    public static double kmhToMph(double kmh) {
+        return kmh / KMH_PER_MPH;
+    }
+
+    public static double mphToKmh(double mph) {
+        return mph * KMH_PER_MPH;
+    }
+
+    /**
+     * @param degrees the direction the wind comes from, clockwise from north.
+     * @return the nearest of the eight compass points, e.g. "NW".
+     */
+    public static String compassDirection(double degrees) {
+        if (Double.isNaN(degrees) || Double.isInfinite(degrees)) {
+            return COMPASS_UNKNOWN;
+        }
+        // Each point covers 45 degrees, centered on its direction
+        int point = (int) Math.floor((degrees + 22.5) / 45) % COMPASS_POINTS.length;
+        return COMPASS_POINTS[point < 0 ? point + COMPASS_POINTS.length : point];
+    }
+}
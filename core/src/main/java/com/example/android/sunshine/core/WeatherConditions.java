@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * Sorts OpenWeatherMap condition codes into the handful of conditions Sunshine has icons, art and
+ * animations for.  Every mapping from a weather id, on the phone and on the watch, goes through
+ * {@link #categoryFor}, which is a single table lookup.  The table follows the icons; the few ids
+ * the alert rules or the watch animation have always treated differently are special-cased there.
+ */
+public final class WeatherConditions {
+
+    public static final int CONDITION_UNKNOWN = 0;
+    public static final int CONDITION_STORM = 1;
+    public static final int CONDITION_LIGHT_RAIN = 2;
+    public static final int CONDITION_RAIN = 3;
+    public static final int CONDITION_SNOW = 4;
+    public static final int CONDITION_FOG = 5;
+    public static final int CONDITION_CLEAR = 6;
+    public static final int CONDITION_LIGHT_CLOUDS = 7;
+    public static final int CONDITION_CLOUDS = 8;
+    public static final int CONDITION_EXTREME = 9;
+    public static final int CONDITION_COUNT = 10;
+
+    // Indexed by condition; the names the art packs use in their file names
+    private static final String[] ART_NAMES = {null, "storm", "light_rain", "rain", "snow", "fog",
+            "clear", "light_clouds", "clouds", null};
+
+    private static final int FIRST_ID = 200;
+    private static final int LAST_ID = 962;
+
+    // First id, last id and condition; a later range overrides an earlier one.
+    // Based on weather code data found at:
+    // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+    private static final int[][] RANGES = {
+            {200, 232, CONDITION_STORM},
+            {300, 321, CONDITION_LIGHT_RAIN},
+            {500, 504, CONDITION_RAIN},
+            {511, 511, CONDITION_SNOW},         // freezing rain
+            {520, 531, CONDITION_RAIN},
+            {600, 622, CONDITION_SNOW},
+            {701, 761, CONDITION_FOG},          // mist, smoke, haze, sand and dust
+            {781, 781, CONDITION_STORM},        // tornado
+            {800, 800, CONDITION_CLEAR},
+            {801, 801, CONDITION_LIGHT_CLOUDS},
+            {802, 804, CONDITION_CLOUDS},
+            {900, 906, CONDITION_EXTREME},
+    };
+
+    private static final byte[] CONDITIONS = new byte[LAST_ID - FIRST_ID + 1];
+
+    static {
+        for (int[] range : RANGES) {
+            for (int id = range[0]; id <= range[1]; id++) {
+                CONDITIONS[id - FIRST_ID] = (byte) range[2];
+            }
+        }
+    }
+
+    private WeatherConditions() {
+    }
+
+    /**
+     * @return the CONDITION_ constant for an OpenWeatherMap weather id, or
+     * {@link #CONDITION_UNKNOWN} if Sunshine doesn't know it.
+     */
+    public static int categoryFor(int weatherId) {
+        if (weatherId < FIRST_ID || weatherId > LAST_ID) {
+            return CONDITION_UNKNOWN;
+        }
+        return CONDITIONS[weatherId - FIRST_ID];
+    }
+
+    /**
+     * @return the name the art packs use for the condition, e.g. "light_rain", or null if they
+     * have no art for it.
+     */
+    public static String artNameFor(int condition) {
+        return ART_NAMES[condition];
+    }
+}
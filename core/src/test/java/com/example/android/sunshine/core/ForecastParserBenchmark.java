@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import junit.framework.TestCase;
+
+import java.io.CharArrayReader;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * Times {@link ForecastParser} on a full two week response and checks that, once it has seen the
+ * response's strings, parsing it again doesn't allocate.  Run with {@code ./gradlew :core:test};
+ * the per-parse time is logged.
+ */
+public class ForecastParserBenchmark extends TestCase {
+    private static final String LOG_TAG = ForecastParserBenchmark.class.getSimpleName();
+
+    private static final int DAYS = 14;
+
+    // Enough for the JIT to compile the parser before it is measured
+    private static final int WARM_UP_PARSES = 5000;
+    private static final int PARSES = 20000;
+
+    private final ForecastParser mParser = new ForecastParser();
+    private final DailyForecast mForecast = new DailyForecast(DAYS);
+    private final CharArrayReader[] mReaders = new CharArrayReader[WARM_UP_PARSES + PARSES];
+
+    public void testParse() throws Exception {
+        char[] response = twoWeekResponse().toCharArray();
+        // The readers are made up front, so only the parser's allocations are counted
+        for (int i = 0; i < mReaders.length; i++) {
+            mReaders[i] = new CharArrayReader(response);
+        }
+        for (int i = 0; i < WARM_UP_PARSES; i++) {
+            mParser.parse(mReaders[i], mForecast);
+        }
+
+        // Reading the counter allocates a little itself; measure that with nothing in between
+        long bytesBefore = allocatedBytes();
+        long overhead = allocatedBytes() - bytesBefore;
+
+        bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = WARM_UP_PARSES; i < mReaders.length; i++) {
+            mParser.parse(mReaders[i], mForecast);
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytes = allocatedBytes() - bytesBefore - overhead;
+
+        Logger.getLogger(LOG_TAG).info(String.format(Locale.US,
+                "parse %8.2f us/response %6d chars %4d days %6d bytes allocated",
+                elapsed / 1000.0 / PARSES, response.length, mForecast.getCount(), bytes));
+        assertEquals(DAYS, mForecast.getCount());
+        assertEquals("Error: parsing a response allocated", 0, bytes);
+    }
+
+    // The sample response's days repeated up to two weeks, as the sync adapter requests
+    private static String twoWeekResponse() {
+        String sample = TestForecastParser.RESPONSE;
+        int listStart = sample.indexOf('[') + 1;
+        String days = sample.substring(listStart, sample.lastIndexOf(']'));
+        StringBuilder response = new StringBuilder(sample.substring(0, listStart));
+        for (int i = 0; i < DAYS / 2; i++) {
+            response.append(i > 0 ? "," : "").append(days);
+        }
+        return response.append("]}").toString();
+    }
+
+    // Bytes this thread has allocated so far, on HotSpot-based JVMs
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import junit.framework.TestCase;
+
+import java.util.TimeZone;
+
+public class TestConversions extends TestCase {
+
+    private static final double DELTA = 1e-9;
+
+    public void testUnits() {
+        assertEquals(212, Units.celsiusToFahrenheit(100), DELTA);
+        assertEquals(-40, Units.fahrenheitToCelsius(-40), DELTA);
+        assertEquals(62.1371192237334, Units.kmhToMph(100), DELTA);
+        assertEquals(100, Units.mphToKmh(Units.kmhToMph(100)), DELTA);
+    }
+
+    public void testCompassDirection() {
+        assertEquals("N", Units.compassDirection(0));
+        assertEquals("N", Units.compassDirection(337.5));
+        assertEquals("NW", Units.compassDirection(337.4));
+        assertEquals("NE", Units.compassDirection(22.5));
+        assertEquals("S", Units.compassDirection(180));
+        assertEquals("N", Units.compassDirection(-10));
+        assertEquals("Unknown", Units.compassDirection(Double.NaN));
+    }
+
+    public void testWeatherConditions() {
+        assertEquals(WeatherConditions.CONDITION_STORM, WeatherConditions.categoryFor(211));
+        assertEquals(WeatherConditions.CONDITION_LIGHT_RAIN, WeatherConditions.categoryFor(301));
+        assertEquals(WeatherConditions.CONDITION_RAIN, WeatherConditions.categoryFor(502));
+        assertEquals(WeatherConditions.CONDITION_UNKNOWN, WeatherConditions.categoryFor(505));
+        assertEquals(WeatherConditions.CONDITION_SNOW, WeatherConditions.categoryFor(511));
+        assertEquals(WeatherConditions.CONDITION_RAIN, WeatherConditions.categoryFor(520));
+        assertEquals(WeatherConditions.CONDITION_FOG, WeatherConditions.categoryFor(761));
+        assertEquals(WeatherConditions.CONDITION_UNKNOWN, WeatherConditions.categoryFor(762));
+        assertEquals(WeatherConditions.CONDITION_UNKNOWN, WeatherConditions.categoryFor(771));
+        assertEquals(WeatherConditions.CONDITION_STORM, WeatherConditions.categoryFor(781));
+        assertEquals(WeatherConditions.CONDITION_CLEAR, WeatherConditions.categoryFor(800));
+        assertEquals(WeatherConditions.CONDITION_EXTREME, WeatherConditions.categoryFor(901));
+        assertEquals(WeatherConditions.CONDITION_UNKNOWN, WeatherConditions.categoryFor(199));
+        assertEquals(WeatherConditions.CONDITION_UNKNOWN, WeatherConditions.categoryFor(950));
+        assertEquals("light_clouds", WeatherConditions.artNameFor(
+                WeatherConditions.categoryFor(801)));
+    }
+
+    public void testForecastDays() {
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        // 2015-11-25 12:00 UTC is Julian day 2457352
+        long noon = 1448452800000L;
+        assertEquals(2457352, ForecastDays.julianDay(noon, utc));
+        assertEquals(noon - ForecastDays.DAY_IN_MILLIS / 2, ForecastDays.startOfDay(noon, utc));
+
+        // 02:00 UTC is still the evening before in California, which starts at 08:00 UTC
+        TimeZone california = TimeZone.getTimeZone("America/Los_Angeles");
+        long night = noon - 10 * 60 * 60 * 1000L;
+        assertEquals(2457351, ForecastDays.julianDay(night, california));
+        assertEquals(noon - 28 * 60 * 60 * 1000L, ForecastDays.startOfDay(night, california));
+    }
+
+    /*
+        Days across a daylight saving change still start at local midnight, and when midnight
+        is skipped, at the moment the clocks jump.
+     */
+    public void testDaylightSaving() {
+        TimeZone california = TimeZone.getTimeZone("America/Los_Angeles");
+        // 2015-11-01, when the clocks went back, starts at 07:00 UTC; the next day at 08:00
+        int fallBack = 2457328;
+        long start = ForecastDays.startOfJulianDay(fallBack, california);
+        assertEquals(1446361200000L, start);
+        assertEquals(start + 25 * 60 * 60 * 1000L,
+                ForecastDays.startOfJulianDay(fallBack + 1, california));
+
+        // In 2015 Brazil skipped from 00:00 to 01:00 on October 18, which is 03:00 UTC
+        TimeZone brazil = TimeZone.getTimeZone("America/Sao_Paulo");
+        long jump = ForecastDays.startOfJulianDay(2457314, brazil);
+        assertEquals(1445137200000L, jump);
+        assertEquals(jump, ForecastDays.startOfDay(jump + 60 * 60 * 1000L, brazil));
+    }
+}
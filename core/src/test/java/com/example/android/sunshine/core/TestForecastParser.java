@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import junit.framework.TestCase;
+
+import java.io.StringReader;
+import java.text.ParseException;
+
+public class TestForecastParser extends TestCase {
+
+    private static final double DELTA = 1e-9;
+
+    // A trimmed down answer from the daily forecast API
+    static final String RESPONSE = "{\"city\":{\"id\":5375480,\"name\":\"Mountain View\","
+            + "\"coord\":{\"lon\":-122.083847,\"lat\":37.386051},\"country\":\"US\","
+            + "\"population\":0},\"cod\":\"200\",\"message\":0.0126,\"cnt\":2,\"list\":["
+            + "{\"dt\":1448395200,\"temp\":{\"day\":13.64,\"min\":-1.5,\"max\":14.2,"
+            + "\"night\":3.83,\"eve\":11.41,\"morn\":1.01},\"pressure\":1001.37,"
+            + "\"humidity\":56,\"weather\":[{\"id\":800,\"main\":\"Clear\","
+            + "\"description\":\"sky is clear\",\"icon\":\"01d\"}],\"speed\":1.46,\"deg\":342,"
+            + "\"clouds\":0},\n"
+            + "{\"dt\":1448481600,\"temp\":{\"day\":14.36,\"min\":2.38,\"max\":15.1e0,"
+            + "\"night\":5.41,\"eve\":11.54,\"morn\":2.38},\"pressure\":999.87,"
+            + "\"humidity\":48,\"weather\":[{\"id\":501,\"main\":\"R\\u0061in\","
+            + "\"description\":\"moderate rain\",\"icon\":\"10d\"}],\"speed\":2.26,\"deg\":21,"
+            + "\"clouds\":76,\"rain\":null,\"snow\":[true,false]}]}";
+
+    private final ForecastParser mParser = new ForecastParser();
+    private final DailyForecast mForecast = new DailyForecast(1);
+
+    public void testParse() throws Exception {
+        assertTrue(mParser.parse(new StringReader(RESPONSE), mForecast));
+
+        assertEquals(200, mForecast.getMessageCode());
+        assertEquals("Mountain View", mForecast.getCityName());
+        assertEquals(37.386051, mForecast.getLatitude(), DELTA);
+        assertEquals(-122.083847, mForecast.getLongitude(), DELTA);
+
+        assertEquals(2, mForecast.getCount());
+        assertEquals(800, mForecast.getWeatherId(0));
+        assertEquals("Clear", mForecast.getDescription(0));
+        assertEquals(14.2, mForecast.getMaxTemp(0), DELTA);
+        assertEquals(-1.5, mForecast.getMinTemp(0), DELTA);
+        assertEquals(1001.37, mForecast.getPressure(0), DELTA);
+        assertEquals(56, mForecast.getHumidity(0));
+        assertEquals(1.46, mForecast.getWindSpeed(0), DELTA);
+        assertEquals(342, mForecast.getWindDirection(0), DELTA);
+
+        assertEquals(501, mForecast.getWeatherId(1));
+        assertEquals("Rain", mForecast.getDescription(1));
+        assertEquals(15.1, mForecast.getMaxTemp(1), DELTA);
+    }
+
+    /*
+        The strings from the last parse are reused when they come again.
+     */
+    public void testReusesStrings() throws Exception {
+        mParser.parse(new StringReader(RESPONSE), mForecast);
+        String city = mForecast.getCityName();
+        String description = mForecast.getDescription(0);
+        mParser.parse(new StringReader(RESPONSE), mForecast);
+        assertSame(city, mForecast.getCityName());
+        assertSame(description, mForecast.getDescription(0));
+    }
+
+    public void testErrorResponse() throws Exception {
+        assertTrue(mParser.parse(new StringReader(
+                "{\"cod\":\"404\",\"message\":\"Error: Not found city\"}"), mForecast));
+        assertEquals(404, mForecast.getMessageCode());
+        assertEquals(0, mForecast.getCount());
+    }
+
+    public void testEmptyResponse() throws Exception {
+        assertFalse(mParser.parse(new StringReader(" \n"), mForecast));
+    }
+
+    public void testMalformed() {
+        assertMalformed("{\"cod\":\"200\"}");
+        assertMalformed(RESPONSE.replace("\"humidity\":48,", ""));
+        assertMalformed(RESPONSE.substring(0, RESPONSE.length() - 1));
+        assertMalformed(RESPONSE.replace("999.87", "9.9.9"));
+        assertMalformed(RESPONSE + "}");
+    }
+
+    private void assertMalformed(String response) {
+        try {
+            mParser.parse(new StringReader(response), mForecast);
+            fail("Error: parsed a malformed response " + response);
+        } catch (ParseException expected) {
+            // As it should be
+        } catch (Exception e) {
+            fail("Error: " + e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.scene;
+
+/**
+ * The draw commands of one frame, in drawing order, kept in preallocated parallel arrays so a
+ * frame can be recorded and replayed again and again without allocating.  What each command's
+ * coordinates and argument mean depends on its op.
+ */
+public final class DrawList {
+
+    /**
+     * Fill the face with the background; the argument is one of the BACKGROUND_ constants of
+     * {@link WatchFaceScene}.
+     */
+    public static final int OP_BACKGROUND = 0;
+
+    /**
+     * A sprite of the current sprite group at (x0, y0), its top left corner; the argument is
+     * the sprite's index in the group, and the alpha 0-255.
+     */
+    public static final int OP_SPRITE = 1;
+
+    /**
+     * A line from (x0, y0) to (x1, y1); the argument is one of the PAINT_ constants of
+     * {@link WatchFaceScene}.
+     */
+    public static final int OP_LINE = 2;
+
+    /**
+     * A text with its baseline starting at (x0, y0); the argument is one of the TEXT_ constants
+     * of {@link WatchFaceScene}.
+     */
+    public static final int OP_TEXT = 3;
+
+    /**
+     * The ambient dial, shifted by (x0, y0) pixels.
+     */
+    public static final int OP_DIAL = 4;
+
+    private final int[] mOps;
+    private final int[] mArgs;
+    private final int[] mAlphas;
+    private final float[] mX0;
+    private final float[] mY0;
+    private final float[] mX1;
+    private final float[] mY1;
+    private int mSize;
+
+    public DrawList(int capacity) {
+        mOps = new int[capacity];
+        mArgs = new int[capacity];
+        mAlphas = new int[capacity];
+        mX0 = new float[capacity];
+        mY0 = new float[capacity];
+        mX1 = new float[capacity];
+        mY1 = new float[capacity];
+    }
+
+    public void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Adds a command; commands past the capacity are dropped.
+     */
+    public void add(int op, int arg, float x0, float y0, float x1, float y1, int alpha) {
+        if (mSize == mOps.length) {
+            return;
+        }
+        int i = mSize++;
+        mOps[i] = op;
+        mArgs[i] = arg;
+        mX0[i] = x0;
+        mY0[i] = y0;
+        mX1[i] = x1;
+        mY1[i] = y1;
+        mAlphas[i] = alpha;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int getOp(int i) {
+        return mOps[i];
+    }
+
+    public int getArg(int i) {
+        return mArgs[i];
+    }
+
+    public int getAlpha(int i) {
+        return mAlphas[i];
+    }
+
+    public float getX0(int i) {
+        return mX0[i];
+    }
+
+    public float getY0(int i) {
+        return mY0[i];
+    }
+
+    public float getX1(int i) {
+        return mX1[i];
+    }
+
+    public float getY1(int i) {
+        return mY1[i];
+    }
+}
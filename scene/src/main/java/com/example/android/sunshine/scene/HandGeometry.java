@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.scene;
+
+/**
+ * Where the watch hands point, from a sine table rather than trigonometry on every frame.
+ */
+public final class HandGeometry {
+
+    /**
+     * One step per minute of the hour hand's travel; seconds and minutes use every 12th step.
+     */
+    public static final int STEPS = 12 * 60;
+
+    // sin and -cos of each step, i.e. the unit x and y offsets of a hand
+    private static final float[] X = new float[STEPS];
+    private static final float[] Y = new float[STEPS];
+
+    static {
+        for (int i = 0; i < STEPS; i++) {
+            double angle = 2 * Math.PI * i / STEPS;
+            X[i] = (float) Math.sin(angle);
+            Y[i] = (float) -Math.cos(angle);
+        }
+    }
+
+    private HandGeometry() {
+    }
+
+    public static int secondStep(int second) {
+        return second * (STEPS / 60);
+    }
+
+    public static int minuteStep(int minute) {
+        return minute * (STEPS / 60);
+    }
+
+    /**
+     * @param hour 0-23
+     */
+    public static int hourStep(int hour, int minute) {
+        return (hour % 12) * 60 + minute;
+    }
+
+    /**
+     * @return the x offset of a hand of length 1 at {@code step}.
+     */
+    public static float x(int step) {
+        return X[step];
+    }
+
+    /**
+     * @return the y offset of a hand of length 1 at {@code step}; screen y grows downwards.
+     */
+    public static float y(int step) {
+        return Y[step];
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.scene;
+
+/**
+ * The weather animation: rain, snow, clouds and fog as particles.  Every particle property lives
+ * in its own primitive array, so a frame is one pass over flat arrays to move the particles and
+ * one pass to turn them into sprite commands.  Particles are kept grouped by sprite, and their
+ * alpha is stepped, so consecutive commands mostly share a sprite and an alpha.
+ */
+final class ParticleField {
+
+    static final int MAX_PARTICLES = 128;
+
+    // Particles at full detail for an effect at intensity 1
+    private static final int RAIN_PARTICLES = 96;
+    private static final int SNOW_PARTICLES = 64;
+    private static final int CLOUD_PARTICLES = 14;
+    private static final int FOG_PARTICLES = 10;
+
+    // Alpha is stepped so that neighbouring particles usually share the paint's current value
+    private static final int ALPHA_STEP = 16;
+
+    // Longer gaps between frames are treated as this, so particles don't jump across the screen
+    private static final long MAX_FRAME_MS = 1000;
+
+    private final float[] mX = new float[MAX_PARTICLES];
+    private final float[] mY = new float[MAX_PARTICLES];
+    // Pixels per millisecond
+    private final float[] mVelocityX = new float[MAX_PARTICLES];
+    private final float[] mVelocityY = new float[MAX_PARTICLES];
+    // 0..1; clouds fade out as they drift away from the center
+    private final float[] mAlpha = new float[MAX_PARTICLES];
+    private final int[] mSprite = new int[MAX_PARTICLES];
+    private int mCount;
+
+    private int mEffect = WeatherEffects.EFFECT_NONE;
+    private float mIntensity;
+    private float mDetail = 1f;
+    private int mSpriteCount;
+    private int mWidth;
+    private int mHeight;
+    private boolean mConfigured;
+    private long mLastFrameTime = -1;
+
+    // xorshift state; java.util.Random would do, but this keeps respawning free of locks
+    private int mSeed = 0x2545F491;
+
+    /**
+     * Picks the effect.  The particles are laid out again on the next frame.
+     *
+     * @param intensity 0..1, scales the number of particles.
+     */
+    void setEffect(int effect, float intensity) {
+        if (effect == mEffect && intensity == mIntensity) {
+            return;
+        }
+        mEffect = effect;
+        mIntensity = intensity;
+        mConfigured = false;
+    }
+
+    int getEffect() {
+        return mEffect;
+    }
+
+    /**
+     * Scales the number of particles down to save power.
+     *
+     * @param detail 0..1
+     */
+    void setDetail(float detail) {
+        if (detail != mDetail) {
+            mDetail = detail;
+            mConfigured = false;
+        }
+    }
+
+    /**
+     * Sets how many sprites the effect's group has; nothing is emitted while there are none.
+     */
+    void setSpriteCount(int spriteCount) {
+        if (spriteCount != mSpriteCount) {
+            mSpriteCount = spriteCount;
+            mConfigured = false;
+        }
+    }
+
+    /**
+     * Restarts the animation, e.g. when the watch comes out of ambient mode.
+     */
+    void restart() {
+        mConfigured = false;
+    }
+
+    /**
+     * @return whether there is anything to animate.
+     */
+    boolean isActive() {
+        return mEffect != WeatherEffects.EFFECT_NONE && mIntensity * mDetail > 0;
+    }
+
+    int getCount() {
+        return mConfigured ? mCount : 0;
+    }
+
+    /**
+     * Moves the particles to {@code now} and adds a sprite command for each visible one.
+     */
+    void advance(DrawList out, int width, int height, long now) {
+        if (mEffect == WeatherEffects.EFFECT_NONE || mSpriteCount == 0) {
+            return;
+        }
+        if (!mConfigured || width != mWidth || height != mHeight) {
+            configure(width, height);
+            mLastFrameTime = now;
+        }
+        long elapsed = Math.min(Math.max(now - mLastFrameTime, 0), MAX_FRAME_MS);
+        mLastFrameTime = now;
+        update(elapsed);
+        emit(out);
+    }
+
+    private void configure(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        int full;
+        switch (mEffect) {
+            case WeatherEffects.EFFECT_RAIN:
+                full = RAIN_PARTICLES;
+                break;
+            case WeatherEffects.EFFECT_SNOW:
+                full = SNOW_PARTICLES;
+                break;
+            case WeatherEffects.EFFECT_CLOUDS:
+                full = CLOUD_PARTICLES;
+                break;
+            default:
+                full = FOG_PARTICLES;
+                break;
+        }
+        mCount = Math.min(MAX_PARTICLES, Math.round(full * mIntensity * mDetail));
+        // Sprites are handed out in runs, so neighbouring draws read neighbouring texels
+        for (int i = 0; i < mCount; i++) {
+            mSprite[i] = i * mSpriteCount / mCount;
+            spawn(i, true);
+        }
+        mConfigured = true;
+    }
+
+    // Places particle i at a fresh starting point; scattered over the whole screen when the
+    // effect starts, at the edge it enters from afterwards.
+    private void spawn(int i, boolean anywhere) {
+        float w = mWidth;
+        float h = mHeight;
+        switch (mEffect) {
+            case WeatherEffects.EFFECT_RAIN:
+                mX[i] = random() * w;
+                mY[i] = anywhere ? random() * h : -random() * h * 0.2f;
+                mVelocityX[i] = -0.05f * h / 1000f;
+                mVelocityY[i] = (0.6f + 0.4f * random()) * h / 1000f;
+                mAlpha[i] = 0.5f + 0.5f * random();
+                break;
+            case WeatherEffects.EFFECT_SNOW:
+                mX[i] = random() * w;
+                mY[i] = anywhere ? random() * h : -random() * h * 0.2f;
+                mVelocityX[i] = (random() - 0.5f) * 0.05f * w / 1000f;
+                mVelocityY[i] = (0.08f + 0.08f * random()) * h / 1000f;
+                mAlpha[i] = 0.6f + 0.4f * random();
+                break;
+            case WeatherEffects.EFFECT_CLOUDS: {
+                // Clouds drift outwards from the center and fade as they go
+                float angle = random() * 2 * (float) Math.PI;
+                float speed = (0.02f + 0.02f * random()) * w / 1000f;
+                float start = anywhere ? random() * w / 2 : 0;
+                mVelocityX[i] = (float) Math.sin(angle) * speed;
+                mVelocityY[i] = (float) -Math.cos(angle) * speed;
+                mX[i] = w / 2 + mVelocityX[i] / speed * start;
+                mY[i] = h / 2 + mVelocityY[i] / speed * start;
+                mAlpha[i] = 1f;
+                break;
+            }
+            default:
+                // Fog: wide, faint banks sliding across
+                mX[i] = anywhere ? random() * w : -w * 0.5f;
+                mY[i] = random() * h;
+                mVelocityX[i] = (0.01f + 0.01f * random()) * w / 1000f;
+                mVelocityY[i] = 0;
+                mAlpha[i] = 0.2f + 0.2f * random();
+                break;
+        }
+    }
+
+    private void update(long elapsed) {
+        float w = mWidth;
+        float h = mHeight;
+        float halfW = w / 2;
+        float halfH = h / 2;
+        boolean clouds = mEffect == WeatherEffects.EFFECT_CLOUDS;
+        float[] x = mX;
+        float[] y = mY;
+        float[] vx = mVelocityX;
+        float[] vy = mVelocityY;
+        for (int i = 0; i < mCount; i++) {
+            x[i] += vx[i] * elapsed;
+            y[i] += vy[i] * elapsed;
+            if (clouds) {
+                float dx = (x[i] - halfW) / halfW;
+                float dy = (y[i] - halfH) / halfH;
+                float distance = dx * dx + dy * dy;
+                mAlpha[i] = distance >= 1 ? 0 : 1 - distance;
+                if (distance >= 1) {
+                    spawn(i, false);
+                }
+            } else if (y[i] > h || x[i] > w * 1.5f || x[i] < -w * 0.5f) {
+                spawn(i, false);
+            }
+        }
+    }
+
+    private void emit(DrawList out) {
+        for (int i = 0; i < mCount; i++) {
+            int alpha = ((int) (mAlpha[i] * 255) / ALPHA_STEP) * ALPHA_STEP;
+            if (alpha != 0) {
+                out.add(DrawList.OP_SPRITE, mSprite[i], mX[i], mY[i], 0, 0, alpha);
+            }
+        }
+    }
+
+    // 0 <= random() < 1
+    private float random() {
+        int seed = mSeed;
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        mSeed = seed;
+        return (seed >>> 8) / (float) (1 << 24);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.scene;
+
+/**
+ * Everything the Sunshine watch face decides about a frame, without drawing it: the background,
+ * the weather animation, the hands, where the temperature labels go, and in ambient mode the
+ * burn-in shift.  {@link #compute} records it all into a {@link DrawList} for a renderer to
+ * replay, and allocates nothing, so the scene can be measured on a plain JVM.
+ */
+public final class WatchFaceScene {
+
+    public static final int BACKGROUND_DEFAULT = 0;
+    public static final int BACKGROUND_SUNNY = 1;
+
+    public static final int PAINT_HAND = 0;
+    public static final int PAINT_AMBIENT_HAND = 1;
+
+    public static final int TEXT_MAX = 0;
+    public static final int TEXT_MIN = 1;
+    public static final int TEXT_TOMORROW = 2;
+
+    /**
+     * Enough commands for the fullest frame: background, particles, hands and labels.
+     */
+    public static final int MAX_COMMANDS = ParticleField.MAX_PARTICLES + 8;
+
+    // The ambient face steps around a 3x3 grid of positions, one step a minute
+    private static final int SHIFT_STEPS = 3;
+
+    private final ParticleField mParticles = new ParticleField();
+    private final int[] mSpriteCounts = new int[WeatherEffects.GROUP_COUNT];
+
+    private int mWeatherId;
+    private boolean mHasTomorrow;
+    private boolean mAmbient;
+    private int mBurnInShift;
+
+    /**
+     * @param hasTomorrow whether there is a tomorrow label to place.
+     */
+    public void setWeather(int weatherId, boolean hasTomorrow) {
+        mWeatherId = weatherId;
+        mHasTomorrow = hasTomorrow;
+        mParticles.setEffect(WeatherEffects.effectFor(weatherId),
+                WeatherEffects.intensityFor(weatherId));
+    }
+
+    /**
+     * @param detail the share of the full particle count to animate, 0..1.
+     */
+    public void setDetail(float detail) {
+        mParticles.setDetail(detail);
+    }
+
+    /**
+     * Sets how many sprites the renderer has for a group; 0 until they are loaded.
+     */
+    public void setSpriteCount(int group, int count) {
+        mSpriteCounts[group] = count;
+    }
+
+    public void setAmbient(boolean ambient) {
+        if (!ambient && mAmbient) {
+            // Watch has just been set to active mode.
+            mParticles.restart();
+        }
+        mAmbient = ambient;
+    }
+
+    /**
+     * @param maxShift how far the ambient face may move for burn-in protection, in pixels;
+     *                 0 keeps it still.
+     */
+    public void setBurnInShift(int maxShift) {
+        mBurnInShift = maxShift;
+    }
+
+    /**
+     * @return whether the interactive face has an animation running.
+     */
+    public boolean isAnimating() {
+        return !mAmbient && mParticles.isActive();
+    }
+
+    /**
+     * @return whether the interactive face shows the second hand.
+     */
+    public boolean showsSecondHand() {
+        return !mAmbient;
+    }
+
+    /**
+     * @return the WeatherEffects group the sprite commands refer to.
+     */
+    public int getSpriteGroup() {
+        return WeatherEffects.spriteGroupFor(mParticles.getEffect());
+    }
+
+    /**
+     * @return how many particles the animation is running.
+     */
+    public int getParticleCount() {
+        return mParticles.getCount();
+    }
+
+    /**
+     * Records one frame.
+     *
+     * @param hour   local hour, 0-23
+     * @param minute local minute, 0-59
+     * @param second local second, 0-59
+     * @param now    the current time in milliseconds, for the weather animation
+     */
+    public void compute(DrawList out, int width, int height, int hour, int minute, int second,
+                        long now) {
+        out.clear();
+        if (mAmbient) {
+            computeAmbient(out, width, height, hour, minute);
+            return;
+        }
+
+        out.add(DrawList.OP_BACKGROUND, WeatherEffects.isSunny(mWeatherId)
+                ? BACKGROUND_SUNNY : BACKGROUND_DEFAULT, 0, 0, width, height, 255);
+
+        // Find the center. Ignore the window insets so that, on round watches with a
+        // "chin", the watch face is centered on the entire screen, not just the usable
+        // portion.
+        float centerX = width / 2f;
+        float centerY = height / 2f;
+
+        // Animation layer (above the background, below the figure and arms.)
+        mParticles.setSpriteCount(mSpriteCounts[getSpriteGroup()]);
+        mParticles.advance(out, width, height, now);
+
+        addHand(out, PAINT_HAND, centerX, centerY, HandGeometry.secondStep(second),
+                centerX - 20);
+
+        out.add(DrawList.OP_TEXT, TEXT_MAX, centerX - 50, centerY + 80, 0, 0, 255);
+        out.add(DrawList.OP_TEXT, TEXT_MIN, centerX + 50, centerY + 80, 0, 0, 255);
+        if (mHasTomorrow) {
+            out.add(DrawList.OP_TEXT, TEXT_TOMORROW, centerX - 30, centerY + 105, 0, 0, 255);
+        }
+
+        addHand(out, PAINT_HAND, centerX, centerY, HandGeometry.minuteStep(minute),
+                centerX - 40);
+        addHand(out, PAINT_HAND, centerX, centerY, HandGeometry.hourStep(hour, minute),
+                centerX - 80);
+    }
+
+    private void computeAmbient(DrawList out, int width, int height, int hour, int minute) {
+        int shiftX = 0;
+        int shiftY = 0;
+        if (mBurnInShift > 0) {
+            int step = hour * 60 + minute;
+            shiftX = (step % SHIFT_STEPS - 1) * mBurnInShift;
+            shiftY = (step / SHIFT_STEPS % SHIFT_STEPS - 1) * mBurnInShift;
+        }
+        out.add(DrawList.OP_DIAL, 0, shiftX, shiftY, 0, 0, 255);
+
+        float centerX = width / 2f + shiftX;
+        float centerY = height / 2f + shiftY;
+        addHand(out, PAINT_AMBIENT_HAND, centerX, centerY, HandGeometry.minuteStep(minute),
+                width / 2f - 40);
+        addHand(out, PAINT_AMBIENT_HAND, centerX, centerY, HandGeometry.hourStep(hour, minute),
+                width / 2f - 80);
+    }
+
+    private static void addHand(DrawList out, int paint, float centerX, float centerY, int step,
+                                float length) {
+        out.add(DrawList.OP_LINE, paint, centerX, centerY,
+                centerX + HandGeometry.x(step) * length, centerY + HandGeometry.y(step) * length,
+                255);
+    }
+}
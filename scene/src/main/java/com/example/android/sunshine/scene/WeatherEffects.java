@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.scene;
+
+import com.example.android.sunshine.core.WeatherConditions;
+
+/**
+ * Which weather animation goes with a weather condition, and which sprites it is drawn with.
+ */
+public final class WeatherEffects {
+
+    public static final int EFFECT_NONE = 0;
+    public static final int EFFECT_RAIN = 1;
+    public static final int EFFECT_SNOW = 2;
+    public static final int EFFECT_CLOUDS = 3;
+    public static final int EFFECT_FOG = 4;
+
+    // The sprite groups the watch loads, see SpriteAtlas
+    public static final int GROUP_CLOUDS = 0;
+    public static final int GROUP_RAIN = 1;
+    public static final int GROUP_SNOW = 2;
+    public static final int GROUP_COUNT = 3;
+
+    // Indexed by WeatherConditions category: the effect and its intensity in percent
+    private static final int[] EFFECTS = new int[WeatherConditions.CONDITION_COUNT];
+    private static final int[] INTENSITIES = new int[WeatherConditions.CONDITION_COUNT];
+
+    static {
+        setEffect(WeatherConditions.CONDITION_STORM, EFFECT_RAIN, 100);
+        setEffect(WeatherConditions.CONDITION_LIGHT_RAIN, EFFECT_RAIN, 20);
+        setEffect(WeatherConditions.CONDITION_RAIN, EFFECT_RAIN, 50);
+        setEffect(WeatherConditions.CONDITION_SNOW, EFFECT_SNOW, 100);
+        setEffect(WeatherConditions.CONDITION_FOG, EFFECT_FOG, 100);
+        setEffect(WeatherConditions.CONDITION_LIGHT_CLOUDS, EFFECT_CLOUDS, 50);
+        setEffect(WeatherConditions.CONDITION_CLOUDS, EFFECT_CLOUDS, 100);
+    }
+
+    // Freezing rain falls as snow, but only as heavily as rain
+    private static final int FREEZING_RAIN = 511;
+    private static final int FREEZING_RAIN_INTENSITY = 50;
+
+    private static void setEffect(int condition, int effect, int intensity) {
+        EFFECTS[condition] = effect;
+        INTENSITIES[condition] = intensity;
+    }
+
+    private WeatherEffects() {
+    }
+
+    /**
+     * @return the EFFECT_ constant for the weather; clear skies get {@link #EFFECT_NONE}.
+     */
+    public static int effectFor(int weatherId) {
+        return EFFECTS[WeatherConditions.categoryFor(weatherId)];
+    }
+
+    /**
+     * @return 0..1, how heavy the weather's effect is.
+     */
+    public static float intensityFor(int weatherId) {
+        if (weatherId == FREEZING_RAIN) {
+            return FREEZING_RAIN_INTENSITY / 100f;
+        }
+        return INTENSITIES[WeatherConditions.categoryFor(weatherId)] / 100f;
+    }
+
+    /**
+     * @return the GROUP_ constant of the sprites {@code effect} is drawn with.
+     */
+    public static int spriteGroupFor(int effect) {
+        switch (effect) {
+            case EFFECT_RAIN:
+                return GROUP_RAIN;
+            case EFFECT_SNOW:
+                return GROUP_SNOW;
+            default:
+                return GROUP_CLOUDS;
+        }
+    }
+
+    /**
+     * @return whether the face gets the sunny background.
+     */
+    public static boolean isSunny(int weatherId) {
+        return WeatherConditions.categoryFor(weatherId) == WeatherConditions.CONDITION_CLEAR;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.scene;
+
+import junit.framework.TestCase;
+
+public class TestWatchFaceScene extends TestCase {
+
+    private static final int SIZE = 320;
+    private static final float DELTA = 0.01f;
+
+    public void testWeatherEffects() {
+        assertEquals(WeatherEffects.EFFECT_RAIN, WeatherEffects.effectFor(211));
+        assertEquals(0.2f, WeatherEffects.intensityFor(301), DELTA);
+        assertEquals(WeatherEffects.EFFECT_SNOW, WeatherEffects.effectFor(511));
+        assertEquals(0.5f, WeatherEffects.intensityFor(511), DELTA);
+        assertEquals(1f, WeatherEffects.intensityFor(601), DELTA);
+        assertEquals(WeatherEffects.EFFECT_NONE, WeatherEffects.effectFor(771));
+        assertEquals(WeatherEffects.EFFECT_FOG, WeatherEffects.effectFor(761));
+        assertEquals(WeatherEffects.EFFECT_RAIN, WeatherEffects.effectFor(781));
+        assertEquals(WeatherEffects.EFFECT_NONE, WeatherEffects.effectFor(800));
+        assertEquals(0.5f, WeatherEffects.intensityFor(801), DELTA);
+        assertEquals(WeatherEffects.GROUP_CLOUDS,
+                WeatherEffects.spriteGroupFor(WeatherEffects.EFFECT_FOG));
+    }
+
+    /*
+        At 3:00:30 on a clear day with low detail: sunny background, no particles, the second hand
+        straight down, no tomorrow label, the minute hand straight up and the hour hand straight
+        right.
+     */
+    public void testClearFrame() {
+        WatchFaceScene scene = new WatchFaceScene();
+        scene.setWeather(800, false);
+        scene.setDetail(0.2f);
+        DrawList list = new DrawList(WatchFaceScene.MAX_COMMANDS);
+        scene.compute(list, SIZE, SIZE, 15, 0, 30, 0);
+
+        assertEquals(6, list.size());
+        assertEquals(DrawList.OP_BACKGROUND, list.getOp(0));
+        assertEquals(WatchFaceScene.BACKGROUND_SUNNY, list.getArg(0));
+
+        // Low detail thins out the animation, but the second hand keeps ticking
+        assertEquals(DrawList.OP_LINE, list.getOp(1));
+        assertEquals(SIZE / 2f, list.getX1(1), DELTA);
+        assertEquals(SIZE / 2f + (SIZE / 2f - 20), list.getY1(1), DELTA);
+
+        assertEquals(DrawList.OP_TEXT, list.getOp(2));
+        assertEquals(DrawList.OP_TEXT, list.getOp(3));
+
+        assertEquals(DrawList.OP_LINE, list.getOp(4));
+        assertEquals(SIZE / 2f, list.getX1(4), DELTA);
+        assertEquals(SIZE / 2f - (SIZE / 2f - 40), list.getY1(4), DELTA);
+
+        assertEquals(DrawList.OP_LINE, list.getOp(5));
+        assertEquals(SIZE / 2f + (SIZE / 2f - 80), list.getX1(5), DELTA);
+        assertEquals(SIZE / 2f, list.getY1(5), DELTA);
+        assertTrue(scene.showsSecondHand());
+        assertFalse(scene.isAnimating());
+    }
+
+    /*
+        Particles are only emitted once the renderer has sprites for them.
+     */
+    public void testParticlesNeedSprites() {
+        WatchFaceScene scene = new WatchFaceScene();
+        scene.setWeather(501, true);
+        DrawList list = new DrawList(WatchFaceScene.MAX_COMMANDS);
+        scene.compute(list, SIZE, SIZE, 10, 9, 0, 0);
+        assertEquals(0, scene.getParticleCount());
+        assertTrue(scene.isAnimating());
+
+        scene.setSpriteCount(WeatherEffects.GROUP_RAIN, 7);
+        scene.compute(list, SIZE, SIZE, 10, 9, 0, 33);
+        assertEquals(48, scene.getParticleCount());
+        for (int i = 0; i < list.size(); i++) {
+            if (list.getOp(i) == DrawList.OP_SPRITE) {
+                assertTrue(list.getArg(i) >= 0 && list.getArg(i) < 7);
+            }
+        }
+    }
+
+    /*
+        In ambient mode only the dial and the two hands are drawn, shifted for burn-in.
+     */
+    public void testAmbientShift() {
+        WatchFaceScene scene = new WatchFaceScene();
+        scene.setWeather(501, true);
+        scene.setBurnInShift(2);
+        scene.setAmbient(true);
+        DrawList list = new DrawList(WatchFaceScene.MAX_COMMANDS);
+
+        scene.compute(list, SIZE, SIZE, 0, 0, 0, 0);
+        assertEquals(3, list.size());
+        assertEquals(DrawList.OP_DIAL, list.getOp(0));
+        assertEquals(-2f, list.getX0(0), DELTA);
+        assertEquals(-2f, list.getY0(0), DELTA);
+        assertEquals(WatchFaceScene.PAINT_AMBIENT_HAND, list.getArg(1));
+        assertEquals(SIZE / 2f - 2, list.getX0(1), DELTA);
+
+        scene.compute(list, SIZE, SIZE, 0, 4, 0, 0);
+        assertEquals(0f, list.getX0(0), DELTA);
+        assertEquals(0f, list.getY0(0), DELTA);
+    }
+}
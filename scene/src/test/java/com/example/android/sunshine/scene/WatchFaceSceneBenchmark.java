@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.scene;
+
+import junit.framework.TestCase;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * Times {@link WatchFaceScene#compute} for each kind of weather and checks that it doesn't
+ * allocate, so a regression in the per-frame work shows up on a desktop JVM.  Run with
+ * {@code ./gradlew :scene:test}; the per-frame times are logged.
+ */
+public class WatchFaceSceneBenchmark extends TestCase {
+    private static final String LOG_TAG = WatchFaceSceneBenchmark.class.getSimpleName();
+
+    private static final int SIZE = 320;
+    private static final int SPRITES_PER_GROUP = 7;
+
+    private static final String[] CATEGORIES =
+            {"storm", "drizzle", "rain", "snow", "fog", "clear", "clouds"};
+    private static final int[] WEATHER_IDS = {211, 301, 501, 601, 741, 800, 803};
+
+    // Enough for the JIT to compile the frame loop before it is measured
+    private static final int WARM_UP_FRAMES = 20000;
+    // An hour of frames at the animation rate
+    private static final int FRAMES = 60 * 60 * 30;
+    private static final long FRAME_MS = 33;
+
+    private final DrawList mDrawList = new DrawList(WatchFaceScene.MAX_COMMANDS);
+
+    public void testInteractiveFrames() {
+        for (int i = 0; i < WEATHER_IDS.length; i++) {
+            WatchFaceScene scene = newScene();
+            scene.setWeather(WEATHER_IDS[i], true);
+            measure(scene, CATEGORIES[i]);
+        }
+    }
+
+    public void testAmbientFrames() {
+        WatchFaceScene scene = newScene();
+        scene.setWeather(WEATHER_IDS[0], true);
+        scene.setBurnInShift(2);
+        scene.setAmbient(true);
+        measure(scene, "ambient");
+    }
+
+    private static WatchFaceScene newScene() {
+        WatchFaceScene scene = new WatchFaceScene();
+        for (int group = 0; group < WeatherEffects.GROUP_COUNT; group++) {
+            scene.setSpriteCount(group, SPRITES_PER_GROUP);
+        }
+        return scene;
+    }
+
+    private void measure(WatchFaceScene scene, String category) {
+        long now = 0;
+        for (int frame = 0; frame < WARM_UP_FRAMES; frame++) {
+            now += FRAME_MS;
+            computeFrame(scene, now);
+        }
+
+        // Reading the counter allocates a little itself; measure that with nothing in between
+        long bytesBefore = allocatedBytes();
+        long overhead = allocatedBytes() - bytesBefore;
+
+        bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            now += FRAME_MS;
+            computeFrame(scene, now);
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytes = allocatedBytes() - bytesBefore - overhead;
+
+        Logger.getLogger(LOG_TAG).info(String.format(Locale.US,
+                "%-8s %8.2f us/frame %4d particles %4d commands %6d bytes allocated",
+                category, elapsed / 1000.0 / FRAMES, scene.getParticleCount(), mDrawList.size(),
+                bytes));
+        assertEquals("Error: computing " + category + " frames allocated", 0, bytes);
+    }
+
+    private void computeFrame(WatchFaceScene scene, long now) {
+        long seconds = now / 1000;
+        scene.compute(mDrawList, SIZE, SIZE, (int) (seconds / 3600 % 24),
+                (int) (seconds / 60 % 60), (int) (seconds % 60), now);
+    }
+
+    // Bytes this thread has allocated so far, on HotSpot-based JVMs
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.test.AndroidTestCase;
+
+public class TestFrameProfiler extends AndroidTestCase {
+
+    public void testPercentile() {
+        int[] histogram = new int[FrameProfiler.BUCKETS];
+        assertEquals("Error: an empty histogram has no percentile",
+                0, FrameProfiler.percentile(histogram, 50));
+
+        // 90 frames under half a millisecond, 10 between 4 and 4.5ms
+        histogram[0] = 90;
+        histogram[8] = 10;
+        assertEquals(FrameProfiler.BUCKET_MICROS, FrameProfiler.percentile(histogram, 50));
+        assertEquals(FrameProfiler.BUCKET_MICROS, FrameProfiler.percentile(histogram, 90));
+        assertEquals(9 * FrameProfiler.BUCKET_MICROS, FrameProfiler.percentile(histogram, 95));
+        assertEquals(9 * FrameProfiler.BUCKET_MICROS, FrameProfiler.percentile(histogram, 100));
+    }
+
+    /*
+        Frames slower than the frame interval, or arriving well after it, count as missed.
+     */
+    public void testMissedDeadlines() throws InterruptedException {
+        FrameProfiler profiler = new FrameProfiler(getContext().getResources());
+
+        profiler.beginFrame();
+        profiler.endFrame(0, 1000);
+        profiler.beginFrame();
+        profiler.endFrame(0, 1000);
+        assertEquals(2, profiler.getFrames());
+        assertEquals(0, profiler.getMissedDeadlines());
+
+        profiler.beginFrame();
+        Thread.sleep(20);
+        profiler.endFrame(0, 10);
+        assertEquals("Error: a frame slower than the interval wasn't counted",
+                1, profiler.getMissedDeadlines());
+
+        // A pause, e.g. for ambient mode, isn't a missed frame
+        profiler.pause();
+        Thread.sleep(50);
+        profiler.beginFrame();
+        profiler.endFrame(0, 10);
+        assertEquals(1, profiler.getMissedDeadlines());
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+
+public class TestWatchFaceRenderer extends AndroidTestCase {
+
+    private static final int SIZE = 320;
+
+    // Storm, drizzle, rain, snow, fog, clear, clouds
+    private static final int[] WEATHER_IDS = {211, 301, 501, 601, 741, 800, 803};
+
+    // A minute of frames at 60fps
+    private static final int FRAMES = 60 * 60;
+
+    /*
+        Every frame is drawn at the interactive rate, so it mustn't give the GC any work.
+     */
+    @SuppressWarnings("deprecation")
+    public void testDrawDoesNotAllocate() throws InterruptedException {
+        WatchFaceRenderer renderer = new WatchFaceRenderer(getContext().getResources());
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        renderer.setAmbient(false);
+
+        // The first frame starts building the sprite atlas in the background
+        renderer.draw(canvas, SIZE, SIZE, 10, 9, 0, 0);
+        for (int wait = 0; wait < 50 && !renderer.hasSprites(); wait++) {
+            Thread.sleep(100);
+        }
+        assertTrue("Error: the sprite atlas wasn't built", renderer.hasSprites());
+
+        for (int weatherId : WEATHER_IDS) {
+            renderer.setWeather(weatherId, 21.5, 12, true, 19, 11);
+            // The first frame places the new weather's particles and picks up the atlas
+            renderer.draw(canvas, SIZE, SIZE, 10, 9, 0, 0);
+
+            Debug.startAllocCounting();
+            Debug.resetThreadAllocCount();
+            for (int frame = 0; frame < FRAMES; frame++) {
+                long now = frame * 16;
+                renderer.draw(canvas, SIZE, SIZE, 10 + frame / 3600, frame / 60 % 60, frame % 60,
+                        now);
+            }
+            int allocations = Debug.getThreadAllocCount();
+            Debug.stopAllocCounting();
+
+            assertEquals("Error: drawing weather " + weatherId + " allocated", 0, allocations);
+        }
+
+        renderer.release();
+        bitmap.recycle();
+    }
+
+    /*
+        Ambient frames come once a minute for most of the day; with burn-in protection each one
+        shifts the face, and none of them may allocate either.
+     */
+    @SuppressWarnings("deprecation")
+    public void testAmbientDrawDoesNotAllocate() {
+        WatchFaceRenderer renderer = new WatchFaceRenderer(getContext().getResources());
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        renderer.setLowBitAmbient(true);
+        renderer.setBurnInProtection(true);
+        renderer.setAmbient(true);
+        // The first frame paints the ambient dial
+        renderer.draw(canvas, SIZE, SIZE, 0, 0, 0, 0);
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        for (int minute = 0; minute < 24 * 60; minute++) {
+            renderer.draw(canvas, SIZE, SIZE, minute / 60, minute % 60, 0, minute * 60000L);
+        }
+        int allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+
+        assertEquals("Error: drawing in ambient mode allocated", 0, allocations);
+
+        renderer.release();
+        bitmap.recycle();
+    }
+}
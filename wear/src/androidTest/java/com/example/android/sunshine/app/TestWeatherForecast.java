@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.test.AndroidTestCase;
+
+public class TestWeatherForecast extends AndroidTestCase {
+
+    // Version 1, sequence 3, absolute, Julian day 100, two days:
+    // 800 / 21.5 / 12.0 and 500 / -3.0 / -10.5 as zigzag varints
+    private static final byte[] PAYLOAD = {
+            1, 3, 0, 100, 2,
+            (byte) 0xC0, 0x0C, (byte) 0xAE, 0x03, (byte) 0xF0, 0x01,
+            (byte) 0xE8, 0x07, 0x3B, (byte) 0xD1, 0x01};
+
+    /*
+        The cache stores what the watch holds with toPayload, and loads it back with apply.
+     */
+    public void testPayloadRoundTrip() {
+        WeatherForecast forecast = new WeatherForecast();
+        assertNull("Error: an empty forecast has a payload", forecast.toPayload());
+        assertEquals(WeatherForecast.RESULT_APPLIED, forecast.apply(PAYLOAD));
+
+        WeatherForecast loaded = new WeatherForecast();
+        assertEquals(WeatherForecast.RESULT_APPLIED, loaded.apply(forecast.toPayload()));
+        assertEquals(3, loaded.getSequence());
+        assertEquals(-1, loaded.getDayIndex(99));
+        assertEquals(1, loaded.getDayIndex(101));
+        assertEquals(800, loaded.getWeatherId(0));
+        assertEquals(21.5f, loaded.getMaxTemp(0));
+        assertEquals(12f, loaded.getMinTemp(0));
+        assertEquals(500, loaded.getWeatherId(1));
+        assertEquals(-3f, loaded.getMaxTemp(1));
+        assertEquals(-10.5f, loaded.getMinTemp(1));
+
+        assertEquals("Error: the version held was applied again",
+                WeatherForecast.RESULT_CURRENT, loaded.apply(PAYLOAD));
+    }
+
+    /*
+        A phone that lost its state starts over at an old sequence number; different days under
+        the same number are still applied.
+     */
+    public void testSameSequenceNewDays() {
+        WeatherForecast forecast = new WeatherForecast();
+        assertEquals(WeatherForecast.RESULT_APPLIED, forecast.apply(PAYLOAD));
+
+        byte[] restarted = PAYLOAD.clone();
+        // Julian day 101 instead of 100
+        restarted[3] = 101;
+        assertEquals(WeatherForecast.RESULT_APPLIED, forecast.apply(restarted));
+        assertEquals(3, forecast.getSequence());
+        assertEquals(0, forecast.getDayIndex(101));
+        assertEquals(WeatherForecast.RESULT_CURRENT, forecast.apply(restarted));
+    }
+}
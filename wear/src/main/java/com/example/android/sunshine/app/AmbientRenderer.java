@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import com.example.android.sunshine.scene.HandGeometry;
+
+/**
+ * The ambient mode look of the watch face, which wakes up once a minute.  The dial is painted
+ * once into a bitmap, so a tick is a clear, a bitmap copy and the two hands the
+ * {@link com.example.android.sunshine.scene.WatchFaceScene} places, burn-in shift included.  On
+ * low-bit displays everything is drawn in white without anti-aliasing.
+ */
+final class AmbientRenderer {
+
+    private final int mHandColor;
+    private final int mMaxShift;
+    private final Paint mHandPaint;
+    private final Paint mTickPaint;
+
+    private Bitmap mDial;
+    private final Canvas mDialCanvas = new Canvas();
+    private boolean mDialValid;
+
+    private boolean mLowBitAmbient;
+
+    AmbientRenderer(Resources resources) {
+        mHandColor = resources.getColor(R.color.analog_hands);
+        mMaxShift = resources.getDimensionPixelSize(R.dimen.ambient_burn_in_shift);
+
+        mHandPaint = new Paint();
+        mHandPaint.setStrokeWidth(resources.getDimension(R.dimen.analog_hand_stroke));
+        mHandPaint.setStrokeCap(Paint.Cap.ROUND);
+
+        mTickPaint = new Paint();
+        mTickPaint.setStrokeWidth(resources.getDimension(R.dimen.ambient_tick_stroke));
+        updatePaints();
+    }
+
+    void setLowBitAmbient(boolean lowBitAmbient) {
+        if (lowBitAmbient != mLowBitAmbient) {
+            mLowBitAmbient = lowBitAmbient;
+            updatePaints();
+        }
+    }
+
+    private void updatePaints() {
+        // Low-bit displays only have a few colors, and no shades to anti-alias with
+        int color = mLowBitAmbient ? Color.WHITE : mHandColor;
+        mHandPaint.setColor(color);
+        mHandPaint.setAntiAlias(!mLowBitAmbient);
+        mTickPaint.setColor(color);
+        mTickPaint.setAntiAlias(!mLowBitAmbient);
+        mDialValid = false;
+    }
+
+    Paint getHandPaint() {
+        return mHandPaint;
+    }
+
+    /**
+     * Clears the face and draws the cached dial, repainting it first if needed.
+     *
+     * @param shiftX how far to move the dial for burn-in protection, in pixels
+     * @param shiftY how far to move the dial for burn-in protection, in pixels
+     */
+    void drawDial(Canvas canvas, int width, int height, int shiftX, int shiftY) {
+        if (mDial == null || mDial.getWidth() != width || mDial.getHeight() != height) {
+            if (mDial != null) {
+                mDial.recycle();
+            }
+            mDial = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mDialCanvas.setBitmap(mDial);
+            mDialValid = false;
+        }
+        if (!mDialValid) {
+            paintDial(width, height);
+        }
+        canvas.drawColor(Color.BLACK);
+        canvas.drawBitmap(mDial, shiftX, shiftY, null);
+    }
+
+    // The hour ticks, on a transparent dial so the shifted copy leaves black behind it
+    private void paintDial(int width, int height) {
+        mDial.eraseColor(Color.TRANSPARENT);
+        float centerX = width / 2f;
+        float centerY = height / 2f;
+        // Clear of the edge by the largest shift, so no tick is ever cut off
+        float outer = width / 2f - 2 * mMaxShift;
+        float inner = outer - width / 20f;
+        for (int hour = 0; hour < 12; hour++) {
+            int step = HandGeometry.hourStep(hour, 0);
+            float x = HandGeometry.x(step);
+            float y = HandGeometry.y(step);
+            mDialCanvas.drawLine(centerX + x * inner, centerY + y * inner,
+                    centerX + x * outer, centerY + y * outer, mTickPaint);
+        }
+        mDialValid = true;
+    }
+
+    void release() {
+        if (mDial != null) {
+            mDialCanvas.setBitmap(null);
+            mDial.recycle();
+            mDial = null;
+        }
+        mDialValid = false;
+    }
+}
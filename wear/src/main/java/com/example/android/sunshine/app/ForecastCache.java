@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Base64;
+
+/**
+ * Keeps the last forecast on the watch, so a new watch face engine can show the weather straight
+ * away instead of waiting for the phone.  The forecast is stored as an absolute payload in the
+ * phone's format, so loading it is just {@link WeatherForecast#apply}.
+ */
+final class ForecastCache {
+
+    private static final String PREFS_NAME = "forecast_cache";
+    private static final String KEY_PAYLOAD = "payload";
+
+    private ForecastCache() {
+    }
+
+    /**
+     * Loads the stored forecast into {@code forecast}.
+     *
+     * @return whether there was a stored forecast.
+     */
+    static boolean load(Context context, WeatherForecast forecast) {
+        String stored = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getString(KEY_PAYLOAD, null);
+        if (stored == null) {
+            return false;
+        }
+        try {
+            return forecast.apply(Base64.decode(stored, Base64.NO_WRAP))
+                    == WeatherForecast.RESULT_APPLIED;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    static void save(Context context, WeatherForecast forecast) {
+        byte[] payload = forecast.toPayload();
+        if (payload == null) {
+            return;
+        }
+        // Written while ForecastStore holds its lock, usually on the listener service's thread,
+        // and watch faces wait on that lock to copy the forecast; so don't wait for the disk
+        SharedPreferences.Editor editor =
+                context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit();
+        editor.putString(KEY_PAYLOAD, Base64.encodeToString(payload, Base64.NO_WRAP));
+        editor.apply();
+    }
+}
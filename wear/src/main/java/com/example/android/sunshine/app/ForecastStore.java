@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+
+import com.example.android.sunshine.core.ForecastWire;
+import com.google.android.gms.wearable.DataMap;
+import com.google.android.gms.wearable.PutDataMapRequest;
+import com.google.android.gms.wearable.PutDataRequest;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The watch's forecast, shared by everything in the process.  Payloads from the phone are decoded
+ * and persisted here by whoever receives them, usually {@link WeatherDataListenerService} on its
+ * background thread, and watch faces are told through {@link OnForecastChangedListener} so they
+ * only have to copy the result.
+ */
+final class ForecastStore {
+
+    interface OnForecastChangedListener {
+        /**
+         * Called on the thread that applied the update; keep it short.
+         */
+        void onForecastChanged();
+    }
+
+    private static ForecastStore sInstance;
+
+    private final Context mContext;
+    private final WeatherForecast mForecast = new WeatherForecast();
+    private final CopyOnWriteArrayList<OnForecastChangedListener> mListeners =
+            new CopyOnWriteArrayList<>();
+    // The sequence this process last told the phone about, or -1
+    private int mAcknowledgedSequence = -1;
+
+    private ForecastStore(Context context) {
+        mContext = context;
+        ForecastCache.load(context, mForecast);
+    }
+
+    /**
+     * @return the store, loading the cached forecast into it on first use.
+     */
+    static synchronized ForecastStore get(Context context) {
+        if (sInstance == null) {
+            sInstance = new ForecastStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    void addListener(OnForecastChangedListener listener) {
+        mListeners.add(listener);
+    }
+
+    void removeListener(OnForecastChangedListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Applies the forecast in a weather data item, persists it and tells the listeners.
+     *
+     * @return the {@link WeatherForecast} result.
+     */
+    int ingest(DataMap dataMap) {
+        int result;
+        synchronized (this) {
+            result = mForecast.apply(dataMap.getByteArray(ForecastWire.KEY_FORECAST));
+            if (result == WeatherForecast.RESULT_APPLIED) {
+                ForecastCache.save(mContext, mForecast);
+            }
+        }
+        if (result == WeatherForecast.RESULT_APPLIED) {
+            for (OnForecastChangedListener listener : mListeners) {
+                listener.onForecastChanged();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copies the forecast into {@code target}, without allocating.
+     */
+    synchronized void copyTo(WeatherForecast target) {
+        target.copyFrom(mForecast);
+    }
+
+    /**
+     * @param result what {@link #ingest} returned for the payload.
+     * @return whether the phone should be told which version the watch has: after any payload
+     * that wasn't already held, or if it hasn't heard about the held one from this process yet.
+     */
+    synchronized boolean needsAcknowledgement(int result) {
+        return result != WeatherForecast.RESULT_CURRENT
+                || mAcknowledgedSequence != mForecast.getSequence();
+    }
+
+    /**
+     * @return the request that tells the phone which version the watch has; if the last payload
+     * couldn't be applied, that makes it send absolute values next time.
+     */
+    synchronized PutDataRequest createAcknowledgement() {
+        mAcknowledgedSequence = mForecast.getSequence();
+        PutDataMapRequest mapRequest = PutDataMapRequest.create(ForecastWire.PATH_WEATHER_ACK);
+        mapRequest.getDataMap().putInt(ForecastWire.KEY_ACK_SEQUENCE, mAcknowledgedSequence);
+        return mapRequest.asPutDataRequest();
+    }
+}
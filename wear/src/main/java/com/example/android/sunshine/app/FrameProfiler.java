@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.SystemClock;
+
+import com.google.android.gms.wearable.DataMap;
+
+/**
+ * Times the interactive frames of the watch face: the whole draw, the weather animation part of
+ * it, and how many frames came later than the frame rate asked for.  Times go into fixed-size
+ * histograms, so recording a frame, and drawing the overlay that shows the numbers, doesn't
+ * allocate.
+ */
+final class FrameProfiler {
+
+    static final String KEY_FRAMES = "FRAMES";
+    static final String KEY_MISSED_DEADLINES = "MISSED_DEADLINES";
+    static final String KEY_BUCKET_MICROS = "BUCKET_MICROS";
+    static final String KEY_DRAW_HISTOGRAM = "DRAW_HISTOGRAM";
+    static final String KEY_ANIMATION_HISTOGRAM = "ANIMATION_HISTOGRAM";
+    static final String KEY_TIMESTAMP = "TIMESTAMP";
+
+    // Buckets are half a millisecond wide; the last one also takes everything slower than 32ms
+    static final int BUCKET_MICROS = 500;
+    static final int BUCKETS = 64;
+
+    // A frame this much later than the frame interval counts as missed
+    private static final float DEADLINE_SLACK = 1.5f;
+
+    private final int[] mDrawHistogram = new int[BUCKETS];
+    private final int[] mAnimationHistogram = new int[BUCKETS];
+    private int mFrames;
+    private int mMissedDeadlines;
+    private int mExportedFrames;
+
+    private long mFrameStartNanos;
+    // Uptime of the previous frame, or -1 when the frames aren't running back to back
+    private long mLastFrameUptime = -1;
+    private long mLastTargetInterval;
+
+    private boolean mOverlayVisible;
+    private final Paint mOverlayPaint;
+    private final float mLineHeight;
+    private final char[] mLine = new char[40];
+    private int mLineLength;
+
+    FrameProfiler(Resources resources) {
+        mOverlayPaint = new Paint();
+        mOverlayPaint.setColor(Color.WHITE);
+        mOverlayPaint.setAntiAlias(true);
+        mOverlayPaint.setTextSize(resources.getDimension(R.dimen.profiler_text_size));
+        mLineHeight = mOverlayPaint.getFontSpacing();
+    }
+
+    void beginFrame() {
+        mFrameStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Records the frame started by {@link #beginFrame}.
+     *
+     * @param animationNanos how long of it the weather animation took.
+     * @param targetInterval the frame interval the face is running at, in milliseconds.
+     */
+    void endFrame(long animationNanos, long targetInterval) {
+        long drawNanos = System.nanoTime() - mFrameStartNanos;
+        mDrawHistogram[bucketOf(drawNanos)]++;
+        mAnimationHistogram[bucketOf(animationNanos)]++;
+        mFrames++;
+
+        // Around a rate change the longer of the two intervals is the one that applies
+        long uptime = SystemClock.uptimeMillis();
+        long deadline = (long) (Math.max(targetInterval, mLastTargetInterval) * DEADLINE_SLACK);
+        if (drawNanos / 1000000 > targetInterval
+                || (mLastFrameUptime >= 0 && uptime - mLastFrameUptime > deadline)) {
+            mMissedDeadlines++;
+        }
+        mLastFrameUptime = uptime;
+        mLastTargetInterval = targetInterval;
+    }
+
+    /**
+     * The frames stopped, e.g. for ambient mode; the gap until the next one isn't a miss.
+     */
+    void pause() {
+        mLastFrameUptime = -1;
+    }
+
+    private static int bucketOf(long nanos) {
+        return (int) Math.min(nanos / 1000 / BUCKET_MICROS, BUCKETS - 1);
+    }
+
+    /**
+     * @return the time {@code percent} percent of the recorded frames were at or under, in
+     * microseconds, rounded up to the histogram's resolution.
+     */
+    static int percentile(int[] histogram, int percent) {
+        int total = 0;
+        for (int count : histogram) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        int wanted = (total * percent + 99) / 100;
+        int seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= wanted) {
+                return (i + 1) * BUCKET_MICROS;
+            }
+        }
+        return histogram.length * BUCKET_MICROS;
+    }
+
+    int getFrames() {
+        return mFrames;
+    }
+
+    int getMissedDeadlines() {
+        return mMissedDeadlines;
+    }
+
+    int getDrawPercentile(int percent) {
+        return percentile(mDrawHistogram, percent);
+    }
+
+    int getAnimationPercentile(int percent) {
+        return percentile(mAnimationHistogram, percent);
+    }
+
+    void toggleOverlay() {
+        mOverlayVisible = !mOverlayVisible;
+    }
+
+    boolean isOverlayVisible() {
+        return mOverlayVisible;
+    }
+
+    /**
+     * Draws the numbers over the top half of the face, if the overlay is on.
+     */
+    void drawOverlay(Canvas canvas, int width, int height) {
+        if (!mOverlayVisible) {
+            return;
+        }
+        float x = width / 4f;
+        float y = height / 4f;
+
+        startLine("frames ");
+        appendInt(mFrames);
+        append(" late ");
+        appendInt(mMissedDeadlines);
+        canvas.drawText(mLine, 0, mLineLength, x, y, mOverlayPaint);
+
+        startLine("draw ");
+        appendMillis(getDrawPercentile(50));
+        append(" / ");
+        appendMillis(getDrawPercentile(95));
+        append(" ms");
+        canvas.drawText(mLine, 0, mLineLength, x, y + mLineHeight, mOverlayPaint);
+
+        startLine("anim ");
+        appendMillis(getAnimationPercentile(50));
+        append(" / ");
+        appendMillis(getAnimationPercentile(95));
+        append(" ms");
+        canvas.drawText(mLine, 0, mLineLength, x, y + 2 * mLineHeight, mOverlayPaint);
+    }
+
+    private void startLine(String text) {
+        mLineLength = 0;
+        append(text);
+    }
+
+    private void append(String text) {
+        int length = Math.min(text.length(), mLine.length - mLineLength);
+        text.getChars(0, length, mLine, mLineLength);
+        mLineLength += length;
+    }
+
+    private void appendInt(int value) {
+        // Digits are written backwards into place, so no intermediate string is needed
+        int digits = 1;
+        for (int rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        if (mLineLength + digits > mLine.length) {
+            return;
+        }
+        for (int i = mLineLength + digits - 1; i >= mLineLength; i--) {
+            mLine[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        mLineLength += digits;
+    }
+
+    // Microseconds as milliseconds with one decimal
+    private void appendMillis(int micros) {
+        int tenths = micros / 100;
+        appendInt(tenths / 10);
+        if (mLineLength + 2 <= mLine.length) {
+            mLine[mLineLength++] = '.';
+            mLine[mLineLength++] = (char) ('0' + tenths % 10);
+        }
+    }
+
+    /**
+     * @return whether frames were recorded since the last {@link #writeTo}.
+     */
+    boolean hasNewFrames() {
+        return mFrames != mExportedFrames;
+    }
+
+    /**
+     * Writes the totals and histograms since the face started, for the phone to read.
+     */
+    void writeTo(DataMap map, long now) {
+        map.putInt(KEY_FRAMES, mFrames);
+        map.putInt(KEY_MISSED_DEADLINES, mMissedDeadlines);
+        map.putInt(KEY_BUCKET_MICROS, BUCKET_MICROS);
+        map.putLongArray(KEY_DRAW_HISTOGRAM, toLongs(mDrawHistogram));
+        map.putLongArray(KEY_ANIMATION_HISTOGRAM, toLongs(mAnimationHistogram));
+        map.putLong(KEY_TIMESTAMP, now);
+        mExportedFrames = mFrames;
+    }
+
+    // DataMap has no int arrays
+    private static long[] toLongs(int[] values) {
+        long[] longs = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            longs[i] = values[i];
+        }
+        return longs;
+    }
+}
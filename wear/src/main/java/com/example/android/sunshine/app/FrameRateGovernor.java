@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import java.util.Locale;
+
+/**
+ * Picks how often the interactive watch face redraws, from what is actually moving.  The weather
+ * animation runs at a steady 15fps, with 30fps bursts the face asks for, e.g. when it comes into
+ * view or is tapped; with no weather moving only the second hand needs a frame, once a second.
+ * Also keeps count of the frames drawn and the time spent at each rate.
+ */
+final class FrameRateGovernor {
+
+    static final int RATE_BURST = 0;
+    static final int RATE_ANIMATION = 1;
+    static final int RATE_SECOND = 2;
+    private static final int RATE_COUNT = 3;
+
+    // About 30fps in a burst, 15fps for the weather the rest of the time
+    private static final long[] INTERVAL_MS = {33, 66, 1000};
+    private static final String[] RATE_NAMES = {"burst", "animation", "second"};
+
+    private final long[] mTimeInRate = new long[RATE_COUNT];
+    private final int[] mFramesInRate = new int[RATE_COUNT];
+
+    private int mRate = -1;
+    // When the current rate was entered, or -1 while the timer is stopped
+    private long mRateSince = -1;
+    private long mBurstUntil;
+
+    /**
+     * Keeps the face at the burst rate for a while, e.g. to play a tap transition or to show the
+     * weather moving smoothly when the face comes into view.
+     */
+    void requestBurst(long now, long durationMs) {
+        mBurstUntil = Math.max(mBurstUntil, now + durationMs);
+    }
+
+    /**
+     * Picks the rate for what is on screen and returns the delay until the next frame, aligned
+     * to the rate's interval so the hands move on time.
+     *
+     * @param animating whether the weather animation is running.
+     */
+    long nextDelay(long now, boolean animating) {
+        int rate;
+        if (now < mBurstUntil) {
+            rate = RATE_BURST;
+        } else if (animating) {
+            rate = RATE_ANIMATION;
+        } else {
+            rate = RATE_SECOND;
+        }
+        enterRate(rate, now);
+        long interval = INTERVAL_MS[rate];
+        return interval - (now % interval);
+    }
+
+    private void enterRate(int rate, long now) {
+        if (rate == mRate && mRateSince >= 0) {
+            return;
+        }
+        if (mRate >= 0 && mRateSince >= 0) {
+            mTimeInRate[mRate] += now - mRateSince;
+        }
+        mRate = rate;
+        mRateSince = now;
+    }
+
+    /**
+     * Counts a drawn interactive frame against the current rate.
+     */
+    void onFrame() {
+        if (mRate >= 0 && mRateSince >= 0) {
+            mFramesInRate[mRate]++;
+        }
+    }
+
+    /**
+     * The timer stopped, because the face went into ambient mode or out of sight.
+     */
+    void stop(long now) {
+        if (mRate >= 0 && mRateSince >= 0) {
+            mTimeInRate[mRate] += now - mRateSince;
+        }
+        mRateSince = -1;
+    }
+
+    /**
+     * @return the interval the current rate aims for, in milliseconds.
+     */
+    long getTargetInterval() {
+        return INTERVAL_MS[mRate >= 0 ? mRate : RATE_SECOND];
+    }
+
+    long getTimeInRate(int rate, long now) {
+        long time = mTimeInRate[rate];
+        if (rate == mRate && mRateSince >= 0) {
+            time += now - mRateSince;
+        }
+        return time;
+    }
+
+    /**
+     * @return the frames per second actually drawn while at {@code rate}.
+     */
+    float getAchievedFps(int rate, long now) {
+        long time = getTimeInRate(rate, now);
+        return time > 0 ? mFramesInRate[rate] * 1000f / time : 0;
+    }
+
+    /**
+     * @return one line per rate with its time and achieved frame rate, for logging.
+     */
+    String describe(long now) {
+        StringBuilder sb = new StringBuilder();
+        for (int rate = 0; rate < RATE_COUNT; rate++) {
+            sb.append(String.format(Locale.US, "%s: %ds, %.1ffps%n", RATE_NAMES[rate],
+                    getTimeInRate(rate, now) / 1000, getAchievedFps(rate, now)));
+        }
+        return sb.toString();
+    }
+}
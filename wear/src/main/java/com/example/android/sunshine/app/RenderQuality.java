@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.PowerManager;
+
+/**
+ * How much animation detail the watch can afford right now, judging by the battery.  There is no
+ * thermal API on Wear yet, so the battery temperature stands in for the thermal state.
+ */
+final class RenderQuality {
+
+    private static final int LOW_BATTERY_PERCENT = 30;
+    private static final int CRITICAL_BATTERY_PERCENT = 15;
+
+    // Tenths of a degree Celsius, as reported by BatteryManager
+    private static final int WARM_BATTERY_TEMPERATURE = 420;
+    private static final int HOT_BATTERY_TEMPERATURE = 450;
+
+    private RenderQuality() {
+    }
+
+    /**
+     * @return the share of the full particle count to draw, 0..1.  Reads a sticky broadcast, so
+     * call it now and then rather than every frame.
+     */
+    static float getDetail(Context context) {
+        Intent battery = context.registerReceiver(null,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) {
+            return 1f;
+        }
+        float detail = 1f;
+
+        boolean plugged = battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        int percent = level >= 0 && scale > 0 ? level * 100 / scale : 100;
+        if (!plugged) {
+            if (powerManager.isPowerSaveMode() || percent < CRITICAL_BATTERY_PERCENT) {
+                detail = 0.25f;
+            } else if (percent < LOW_BATTERY_PERCENT) {
+                detail = 0.5f;
+            }
+        }
+
+        int temperature = battery.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, 0);
+        if (temperature >= HOT_BATTERY_TEMPERATURE) {
+            detail *= 0.25f;
+        } else if (temperature >= WARM_BATTERY_TEMPERATURE) {
+            detail *= 0.5f;
+        }
+        return detail;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The weather sprites packed into a single bitmap, scaled once for the surface they will be drawn
+ * on.  Each sprite resource is decoded once, however many times the sprite arrays list it, and
+ * the decoded original is dropped as soon as it has been copied in.  Immutable once built, so it
+ * can be built on a background thread and handed to the renderer.
+ */
+final class SpriteAtlas {
+
+    // The sprites of each of the scene's WeatherEffects groups, in group order
+    static final int[] GROUP_ARRAY_IDS = {R.array.cloudIds, R.array.rainIds, R.array.snowIds};
+
+    // The sprites are drawn for a face of this many pixels across
+    private static final float DESIGN_WIDTH = 320f;
+
+    // Keeps filtering at the edge of a sprite from picking up its neighbour
+    private static final int PADDING = 1;
+
+    private final Bitmap mBitmap;
+    private final Rect[] mRects;
+    // For each group, the index into mRects of each of its sprites
+    private final int[][] mGroups;
+    private final int mSurfaceWidth;
+
+    private SpriteAtlas(Bitmap bitmap, Rect[] rects, int[][] groups, int surfaceWidth) {
+        mBitmap = bitmap;
+        mRects = rects;
+        mGroups = groups;
+        mSurfaceWidth = surfaceWidth;
+    }
+
+    /**
+     * Decodes the sprites of {@link #GROUP_ARRAY_IDS} and packs them, scaled to a face
+     * {@code surfaceWidth} pixels across.  Slow; call it off the main thread.
+     */
+    static SpriteAtlas build(Resources resources, int surfaceWidth) {
+        float scale = surfaceWidth / DESIGN_WIDTH;
+
+        // Give each distinct drawable one place in the atlas
+        int[][] groups = new int[GROUP_ARRAY_IDS.length][];
+        int[] drawableIds = new int[0];
+        for (int group = 0; group < GROUP_ARRAY_IDS.length; group++) {
+            int[] ids = getResourceIds(resources, GROUP_ARRAY_IDS[group]);
+            groups[group] = new int[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                int index = indexOf(drawableIds, ids[i]);
+                if (index < 0) {
+                    index = drawableIds.length;
+                    int[] grown = new int[index + 1];
+                    System.arraycopy(drawableIds, 0, grown, 0, index);
+                    grown[index] = ids[i];
+                    drawableIds = grown;
+                }
+                groups[group][i] = index;
+            }
+        }
+
+        // Only the sizes are needed to lay the sprites out.  The sprites are decoded at their
+        // pixel size, without the density scaling, since the surface scale above is the only one
+        // they should get.
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        bounds.inScaled = false;
+        Rect[] rects = new Rect[drawableIds.length];
+        // Wide enough for the widest sprite, so none has to be squeezed into a shelf
+        int atlasWidth = Math.max(surfaceWidth, 1);
+        for (int i = 0; i < drawableIds.length; i++) {
+            BitmapFactory.decodeResource(resources, drawableIds[i], bounds);
+            rects[i] = new Rect(0, 0, Math.max(1, Math.round(bounds.outWidth * scale)),
+                    Math.max(1, Math.round(bounds.outHeight * scale)));
+            atlasWidth = Math.max(atlasWidth, rects[i].width());
+        }
+        int atlasHeight = pack(rects, atlasWidth);
+
+        Bitmap atlas = Bitmap.createBitmap(atlasWidth, atlasHeight, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(atlas);
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        BitmapFactory.Options unscaled = new BitmapFactory.Options();
+        unscaled.inScaled = false;
+        for (int i = 0; i < drawableIds.length; i++) {
+            Bitmap sprite = BitmapFactory.decodeResource(resources, drawableIds[i], unscaled);
+            canvas.drawBitmap(sprite, null, rects[i], paint);
+            sprite.recycle();
+        }
+        return new SpriteAtlas(atlas, rects, groups, surfaceWidth);
+    }
+
+    // Lays the rects out in shelves, tallest first, and returns the height they take up.  None of
+    // the rects may be wider than width.
+    private static int pack(Rect[] rects, int width) {
+        Integer[] order = new Integer[rects.length];
+        for (int i = 0; i < rects.length; i++) {
+            order[i] = i;
+        }
+        final Rect[] sorted = rects;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                return sorted[rhs].height() - sorted[lhs].height();
+            }
+        });
+
+        int x = 0;
+        int y = 0;
+        int shelfHeight = 0;
+        for (int i : order) {
+            Rect rect = rects[i];
+            if (x > 0 && x + rect.width() > width) {
+                x = 0;
+                y += shelfHeight + PADDING;
+                shelfHeight = 0;
+            }
+            rect.offsetTo(x, y);
+            x += rect.width() + PADDING;
+            shelfHeight = Math.max(shelfHeight, rect.height());
+        }
+        return Math.max(y + shelfHeight, 1);
+    }
+
+    private static int indexOf(int[] values, int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int[] getResourceIds(Resources resources, int arrayId) {
+        TypedArray array = resources.obtainTypedArray(arrayId);
+        int[] ids = new int[array.length()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = array.getResourceId(i, 0);
+        }
+        array.recycle();
+        return ids;
+    }
+
+    int getSurfaceWidth() {
+        return mSurfaceWidth;
+    }
+
+    Bitmap getBitmap() {
+        return mBitmap;
+    }
+
+    /**
+     * @return the sprites of {@code group}, as indices for {@link #getRect}.
+     */
+    int[] getGroup(int group) {
+        return mGroups[group];
+    }
+
+    /**
+     * @return where sprite {@code index} is in the atlas bitmap; not to be modified.
+     */
+    Rect getRect(int index) {
+        return mRects[index];
+    }
+
+    void release() {
+        mBitmap.recycle();
+    }
+}
@@ -20,61 +20,59 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.res.Resources;
-import android.content.res.TypedArray;
-import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.Rect;
-import android.graphics.drawable.BitmapDrawable;
-import android.graphics.drawable.Drawable;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
-import android.text.format.Time;
 import android.util.Log;
-import android.util.TypedValue;
 import android.view.SurfaceHolder;
 
+import com.example.android.sunshine.core.ForecastDays;
+import com.example.android.sunshine.core.ForecastWire;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.wearable.DataApi;
-import com.google.android.gms.wearable.DataEvent;
-import com.google.android.gms.wearable.DataEventBuffer;
+import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.wearable.DataItem;
-import com.google.android.gms.wearable.DataMap;
+import com.google.android.gms.wearable.DataItemBuffer;
 import com.google.android.gms.wearable.DataMapItem;
+import com.google.android.gms.wearable.PutDataMapRequest;
+import com.google.android.gms.wearable.PutDataRequest;
 import com.google.android.gms.wearable.Wearable;
 
 import java.lang.ref.WeakReference;
 import java.util.TimeZone;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Analog watch face with a ticking second hand. In ambient mode, the second hand isn't shown. On
  * devices with low-bit ambient mode, the hands are drawn without anti-aliasing in ambient mode.
+ * In interactive mode the face redraws only as often as {@link FrameRateGovernor} finds it needs.
  */
 public class SunshineWatchFace extends CanvasWatchFaceService {
     /**
-     * Update rate in milliseconds for interactive mode. We update once a second to advance the
-     * second hand.
+     * How long a tap keeps the interactive face at the burst frame rate.
      */
-    private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final long TAP_TRANSITION_MS = 600;
+
+    /**
+     * How long the weather animation runs at the burst frame rate when the face comes into view,
+     * the weather changes or the user taps; after that it drops back to its own rate.
+     */
+    private static final long ANIMATION_BURST_MS = 3000;
 
     /**
      * Handler message id for updating the time periodically in interactive mode.
      */
     private static final int MSG_UPDATE_TIME = 0;
-    private static final String LOG_TAG = SunshineWatchFace.class.getSimpleName();
 
-
-    private static final String KEY_CONDITION = "WEATHER_CONDITION";
-    private static final String KEY_TEMP_MIN = "WEATHER_TEMP_MIN";
-    private static final String KEY_TEMP_MAX = "WEATHER_TEMP_MAX";
-    private static final String KEY_TEMP_UNIT = "WEATHER_TEMP_UNIT";
+    /**
+     * Handler message id for picking up a forecast the {@link ForecastStore} received.
+     */
+    private static final int MSG_FORECAST_CHANGED = 1;
+    private static final String LOG_TAG = SunshineWatchFace.class.getSimpleName();
 
 
     @Override
@@ -97,63 +95,52 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                     case MSG_UPDATE_TIME:
                         engine.handleUpdateTimeMessage();
                         break;
+                    case MSG_FORECAST_CHANGED:
+                        engine.handleForecastChanged();
+                        break;
                 }
             }
         }
     }
 
-    private class Engine extends CanvasWatchFaceService.Engine implements DataApi.DataListener,
+    private class Engine extends CanvasWatchFaceService.Engine
+            implements ForecastStore.OnForecastChangedListener,
             GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener {
         final Handler mUpdateTimeHandler = new EngineHandler(this);
         boolean mRegisteredTimeZoneReceiver = false;
-        Paint mBackgroundPaint;
-        Paint mHandPaint;
+        WatchFaceRenderer mRenderer;
         boolean mAmbient;
-        Time mTime;
+        // Read on every frame; TimeZone.getOffset doesn't allocate, unlike Time.setToNow
+        TimeZone mTimeZone;
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mTime.clear(intent.getStringExtra("time-zone"));
-                mTime.setToNow();
+                mTimeZone = TimeZone.getTimeZone(intent.getStringExtra("time-zone"));
             }
         };
         int mTapCount;
-
-        private final Resources mResources = getResources();
-
-
-        private long mTimeMotionStart = -1;
-        private long mTimeElapsed;
-        private int mLoop;
-        private Bitmap[] mCloudBitmaps;
-        private int[] mCloudSpeeds;
-        private int[] mCloudDegrees;
-        private Paint[] mCloudFilterPaints;
-        private Bitmap[] mRainBitmaps;
-        private int[] mRainSpeeds;
-        private int[] mRainDegrees;
-        private Paint[] mRainFilterPaints;
-        private Bitmap[] mSnowBitmaps;
-        private int[] mSnowSpeeds;
-        private int[] mSnowDegrees;
-        private Paint[] mSnowFilterPaints;
-        private float mRadius;
+        final FrameRateGovernor mFrameRateGovernor = new FrameRateGovernor();
+        FrameProfiler mFrameProfiler;
 
         GoogleApiClient mGoogleApiClient = new GoogleApiClient.Builder(SunshineWatchFace.this)
                 .addConnectionCallbacks(this)
                 .addOnConnectionFailedListener(this)
                 .addApi(Wearable.API)
                 .build();
-
+        // The client connects each time the face becomes visible, but the phone's data item only
+        // needs reading once; after that the listener service keeps the store up to date
+        boolean mWeatherDataFetched;
 
         /**
          * Whether the display supports fewer bits for each color in ambient mode. When true, we
          * disable anti-aliasing in ambient mode.
          */
         boolean mLowBitAmbient;
-        private double mTempMax;
-        private double mTempMin;
-        private int mWeather;
+        ForecastStore mForecastStore;
+        // This engine's copy of the store's forecast, only touched on the engine's thread
+        private final WeatherForecast mForecast = new WeatherForecast();
+        // The Julian day the renderer is showing the weather for
+        private int mForecastDay = -1;
 
 
         @Override
@@ -167,56 +154,22 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                     .setAcceptsTapEvents(true)
                     .build());
 
-            Resources resources = SunshineWatchFace.this.getResources();
-
-            mBackgroundPaint = new Paint();
-            mBackgroundPaint.setColor(resources.getColor(R.color.background));
-
-            mHandPaint = new Paint();
-            mHandPaint.setColor(resources.getColor(R.color.analog_hands));
-            mHandPaint.setStrokeWidth(resources.getDimension(R.dimen.analog_hand_stroke));
-            mHandPaint.setAntiAlias(true);
-            mHandPaint.setStrokeCap(Paint.Cap.ROUND);
-
-            mTime = new Time();
-
-            // Initialing cloud bitmaps and settings
-            mCloudDegrees = mResources.getIntArray(R.array.cloudDegrees);
-            mCloudBitmaps = loadBitmaps(R.array.cloudIds);
-            mCloudSpeeds = mResources.getIntArray(R.array.cloudSpeed);
-            mCloudFilterPaints = new Paint[mCloudBitmaps.length];
-
-            // Initialing rain bitmaps and settings
-            mRainDegrees = mResources.getIntArray(R.array.rainDegrees);
-            mRainBitmaps = loadBitmaps(R.array.rainIds);
-            mRainSpeeds = mResources.getIntArray(R.array.rainSpeed);
-            mRainFilterPaints = new Paint[mRainBitmaps.length];
-
-            // Initialing rain bitmaps and settings
-            mSnowDegrees = mResources.getIntArray(R.array.snowDegrees);
-            mSnowBitmaps = loadBitmaps(R.array.snowIds);
-            mSnowSpeeds = mResources.getIntArray(R.array.snowSpeed);
-            mSnowFilterPaints = new Paint[mSnowBitmaps.length];
-
-            // We need different paints because the alpha applied is different for different clouds
-            for (int i = 0; i < mCloudBitmaps.length; i++) {
-                Paint paint = new Paint();
-                paint.setFilterBitmap(true);
-                mCloudFilterPaints[i] = paint;
-            }
-
-            // We need different paints because the alpha applied is different for different clouds
-            for (int i = 0; i < mRainBitmaps.length; i++) {
-                Paint paint = new Paint();
-                paint.setFilterBitmap(true);
-                mRainFilterPaints[i] = paint;
-            }
+            mRenderer = new WatchFaceRenderer(getResources());
+            mFrameProfiler = new FrameProfiler(getResources());
+            mTimeZone = TimeZone.getDefault();
 
+            // Show the last forecast on the first frame; the phone's copy is fetched on connect
+            mForecastStore = ForecastStore.get(SunshineWatchFace.this);
+            mForecastStore.copyTo(mForecast);
+            mForecastStore.addListener(this);
         }
 
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mUpdateTimeHandler.removeMessages(MSG_FORECAST_CHANGED);
+            mForecastStore.removeListener(this);
+            mRenderer.release();
             super.onDestroy();
         }
 
@@ -224,25 +177,28 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         public void onPropertiesChanged(Bundle properties) {
             super.onPropertiesChanged(properties);
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            mRenderer.setLowBitAmbient(mLowBitAmbient);
+            mRenderer.setBurnInProtection(
+                    properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false));
         }
 
         @Override
         public void onTimeTick() {
             super.onTimeTick();
+            // Once a minute is often enough to follow the battery; the detail only thins out
+            // the particles, the weather keeps its frame rate
+            mRenderer.setDetail(RenderQuality.getDetail(SunshineWatchFace.this));
             invalidate();
         }
 
         @Override
         public void onAmbientModeChanged(boolean inAmbientMode) {
             super.onAmbientModeChanged(inAmbientMode);
-            if (!inAmbientMode) {
-                // Watch has just been set to active mode.
-                mTimeMotionStart = System.currentTimeMillis();
-            }
+            mRenderer.setAmbient(inAmbientMode);
             if (mAmbient != inAmbientMode) {
                 mAmbient = inAmbientMode;
-                if (mLowBitAmbient) {
-                    mHandPaint.setAntiAlias(!inAmbientMode);
+                if (!inAmbientMode) {
+                    requestAnimationBurst();
                 }
                 invalidate();
             }
@@ -253,12 +209,10 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         }
 
         /**
-         * Captures tap event (and tap type) and toggles the background color if the user finishes
-         * a tap.
+         * Captures tap event (and tap type) and counts the taps the user finishes.
          */
         @Override
         public void onTapCommand(int tapType, int x, int y, long eventTime) {
-            Resources resources = SunshineWatchFace.this.getResources();
             switch (tapType) {
                 case TAP_TYPE_TOUCH:
                     // The user has started touching the screen.
@@ -269,8 +223,12 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                 case TAP_TYPE_TAP:
                     // The user has completed the tap gesture.
                     mTapCount++;
-                    mBackgroundPaint.setColor(resources.getColor(mTapCount % 2 == 0 ?
-                            R.color.background : R.color.background2));
+                    if (BuildConfig.DEBUG) {
+                        mFrameProfiler.toggleOverlay();
+                    }
+                    mFrameRateGovernor.requestBurst(System.currentTimeMillis(),
+                            mRenderer.isAnimating() ? ANIMATION_BURST_MS : TAP_TRANSITION_MS);
+                    updateTimer();
                     break;
             }
             invalidate();
@@ -278,65 +236,27 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            mTime.setToNow();
-            Resources resources = SunshineWatchFace.this.getResources();
-
-
-            // Draw the background.
-            if (isInAmbientMode()) {
-                canvas.drawColor(Color.BLACK);
-            } else {
-                if (mWeather == 800) {
-                    mBackgroundPaint.setColor(resources.getColor(R.color.sun));
-                } else {
-                    mBackgroundPaint.setColor(resources.getColor(R.color.background));
-                }
-
-
-                canvas.drawRect(0, 0, canvas.getWidth(), canvas.getHeight(), mBackgroundPaint);
-            }
-
-            // Find the center. Ignore the window insets so that, on round watches with a
-            // "chin", the watch face is centered on the entire screen, not just the usable
-            // portion.
-            float centerX = bounds.width() / 2f;
-            float centerY = bounds.height() / 2f;
-
-            float secRot = mTime.second / 30f * (float) Math.PI;
-            int minutes = mTime.minute;
-            float minRot = minutes / 30f * (float) Math.PI;
-            float hrRot = ((mTime.hour + (minutes / 60f)) / 6f) * (float) Math.PI;
-
-            float secLength = centerX - 20;
-            float minLength = centerX - 40;
-            float hrLength = centerX - 80;
-
-
             if (!mAmbient) {
-                // Draw animation layer (above the background, below the figure and arms.)
-                drawAnimationLayer(canvas, centerX, centerY);
+                mFrameProfiler.beginFrame();
+            }
+            long now = System.currentTimeMillis();
+            int offset = mTimeZone.getOffset(now);
+            int today = ForecastDays.julianDay(now, offset);
+            if (today != mForecastDay) {
+                updateTodayFromForecast(today);
             }
 
-
+            long localSeconds = (now + offset) / 1000;
+            int second = (int) (localSeconds % 60);
+            int minute = (int) (localSeconds / 60 % 60);
+            int hour = (int) (localSeconds / 3600 % 24);
+            mRenderer.draw(canvas, bounds.width(), bounds.height(), hour, minute, second, now);
             if (!mAmbient) {
-                float secX = (float) Math.sin(secRot) * secLength;
-                float secY = (float) -Math.cos(secRot) * secLength;
-                canvas.drawLine(centerX, centerY, centerX + secX, centerY + secY, mHandPaint);
-
-                String tMin = String.format(getResources().getString(R.string.format_temperature), mTempMax);
-                String tMax = String.format(getResources().getString(R.string.format_temperature), mTempMin);
-                canvas.drawText("T Max " + tMax, centerX - 50, centerY + 80, mHandPaint);
-                canvas.drawText("T Min " + tMin, centerX + 50, centerY + 80, mHandPaint);
-                // canvas.drawText(Integer.toString(mWeather), centerX + 80, centerY, mHandPaint);
+                mFrameRateGovernor.onFrame();
+                mFrameProfiler.endFrame(mRenderer.getAnimationNanos(),
+                        mFrameRateGovernor.getTargetInterval());
+                mFrameProfiler.drawOverlay(canvas, bounds.width(), bounds.height());
             }
-
-            float minX = (float) Math.sin(minRot) * minLength;
-            float minY = (float) -Math.cos(minRot) * minLength;
-            canvas.drawLine(centerX, centerY, centerX + minX, centerY + minY, mHandPaint);
-
-            float hrX = (float) Math.sin(hrRot) * hrLength;
-            float hrY = (float) -Math.cos(hrRot) * hrLength;
-            canvas.drawLine(centerX, centerY, centerX + hrX, centerY + hrY, mHandPaint);
         }
 
         @Override
@@ -349,13 +269,19 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                 registerReceiver();
 
                 // Update time zone in case it changed while we weren't visible.
-                mTime.clear(TimeZone.getDefault().getID());
-                mTime.setToNow();
+                mTimeZone = TimeZone.getDefault();
+                mRenderer.setDetail(RenderQuality.getDetail(SunshineWatchFace.this));
+                requestAnimationBurst();
             } else {
                 unregisterReceiver();
 
+                if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
+                    Log.d(LOG_TAG, "Frame rates:\n"
+                            + mFrameRateGovernor.describe(System.currentTimeMillis()));
+                }
+
                 if (mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
-                    Wearable.DataApi.removeListener(mGoogleApiClient, this);
+                    exportFrameStats();
                     mGoogleApiClient.disconnect();
                 }
             }
@@ -390,6 +316,9 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
             if (shouldTimerBeRunning()) {
                 mUpdateTimeHandler.sendEmptyMessage(MSG_UPDATE_TIME);
+            } else {
+                mFrameRateGovernor.stop(System.currentTimeMillis());
+                mFrameProfiler.pause();
             }
         }
 
@@ -402,224 +331,132 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         }
 
         /**
-         * Handle updating the time periodically in interactive mode.
+         * Handle updating the time periodically in interactive mode, as often as what is on
+         * screen needs it.
          */
         private void handleUpdateTimeMessage() {
             invalidate();
             if (shouldTimerBeRunning()) {
                 long timeMs = System.currentTimeMillis();
-                long delayMs = INTERACTIVE_UPDATE_RATE_MS
-                        - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
+                long delayMs = mFrameRateGovernor.nextDelay(timeMs, mRenderer.isAnimating());
                 mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
             }
         }
 
-        @Override
-        public void onDataChanged(DataEventBuffer dataEventBuffer) {
-            Log.d(LOG_TAG, "onDataChanged:  ");
-            for (DataEvent dataEvent : dataEventBuffer) {
-                if (dataEvent.getType() != DataEvent.TYPE_CHANGED) {
-                    continue;
-                }
-
-                DataItem dataItem = dataEvent.getDataItem();
-                if (!dataItem.getUri().getPath().equals(
-                        SunshineWatchFaceUtil.PATH_WEATHER_DATA)) {
-                    continue;
-                }
-
-                DataMapItem dataMapItem = DataMapItem.fromDataItem(dataItem);
-                DataMap config = dataMapItem.getDataMap();
-                if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
-                    Log.d(LOG_TAG, "Config DataItem updated:" + config);
-                }
-                updateUiForWeatherDataMap(config);
-            }
+        @Override  // ForecastStore.OnForecastChangedListener
+        public void onForecastChanged() {
+            // Usually called on the listener service's thread
+            mUpdateTimeHandler.sendEmptyMessage(MSG_FORECAST_CHANGED);
         }
 
-
-        private void updateUiForWeatherDataMap(final DataMap dm) {
-            int conditionId = dm.getInt(KEY_CONDITION);
-            double tempMin = dm.getDouble(KEY_TEMP_MIN);
-            double tempMax = dm.getDouble(KEY_TEMP_MAX);
-            String unitValue = dm.getString(KEY_TEMP_UNIT);
-            mTempMax = tempMax;
-            mTempMin = tempMin;
-            mWeather = conditionId;
-            Log.d(LOG_TAG, "updateUiForWeatherDataMap: " + conditionId + " " +
-                    tempMin + " " +
-                    tempMax + " " +
-                    unitValue);
+        /**
+         * Takes a copy of the forecast the store has decoded, for the next frame to show.
+         */
+        private void handleForecastChanged() {
+            mForecastStore.copyTo(mForecast);
+            mForecastDay = -1;
             invalidate();
-
-        }
-
-
-        @Override  // GoogleApiClient.ConnectionCallbacks
-        public void onConnected(Bundle connectionHint) {
-            if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
-                Log.d(LOG_TAG, "onConnected: " + connectionHint);
-            }
-            Wearable.DataApi.addListener(mGoogleApiClient, Engine.this);
-            //updateConfigDataItemAndUiOnStartup();
-        }
-
-        @Override  // GoogleApiClient.ConnectionCallbacks
-        public void onConnectionSuspended(int cause) {
-            if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
-                Log.d(LOG_TAG, "onConnectionSuspended: " + cause);
-            }
-        }
-
-        @Override  // GoogleApiClient.OnConnectionFailedListener
-        public void onConnectionFailed(ConnectionResult result) {
-            if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
-                Log.d(LOG_TAG, "onConnectionFailed: " + result);
-            }
         }
 
         /**
-         * Drawing the animated weather
-         *
-         * @param canvas  Canvas to be drawn on
-         * @param centerX Center of the display
-         * @param centerY Center of the display
+         * Puts the frame timings where the phone can read them, if there are new ones.
          */
-        private void drawAnimationLayer(Canvas canvas, float centerX, float centerY) {
-            if (mAmbient) {
-                // Do nothing - static background in ambient mode
-                mTimeMotionStart = -1;
-            } else {
-
-                if (mTimeMotionStart < 0) {
-                    mTimeMotionStart = System.currentTimeMillis();
-                }
-
-                mTimeElapsed = System.currentTimeMillis() - mTimeMotionStart;
-                animateBackgroundForWeatherCondition(mWeather, canvas, centerX, centerY);
+        private void exportFrameStats() {
+            if (!mFrameProfiler.hasNewFrames()) {
+                return;
             }
+            PutDataMapRequest mapRequest =
+                    PutDataMapRequest.create(SunshineWatchFaceUtil.PATH_FRAME_STATS);
+            mFrameProfiler.writeTo(mapRequest.getDataMap(), System.currentTimeMillis());
+            Wearable.DataApi.putDataItem(mGoogleApiClient, mapRequest.asPutDataRequest());
         }
 
-        /**
-         * Loading an int array from resource file
-         *
-         * @param resId ResourceId of the integer array
-         * @return int array
-         */
-        private int[] getIntArray(int resId) {
-            TypedArray array = mResources.obtainTypedArray(resId);
-            int[] rc = new int[array.length()];
-            TypedValue value = new TypedValue();
-            for (int i = 0; i < array.length(); i++) {
-                array.getValue(i, value);
-                rc[i] = value.resourceId;
+        private void updateTodayFromForecast(int today) {
+            mForecastDay = today;
+            int index = mForecast.getDayIndex(today);
+            if (index < 0) {
+                return;
+            }
+            // The labels are built here rather than in onDraw, so drawing doesn't allocate
+            int tomorrow = mForecast.getDayIndex(today + 1);
+            boolean wasAnimating = mRenderer.isAnimating();
+            mRenderer.setWeather(mForecast.getWeatherId(index),
+                    mForecast.getMaxTemp(index), mForecast.getMinTemp(index),
+                    tomorrow >= 0,
+                    tomorrow >= 0 ? mForecast.getMaxTemp(tomorrow) : 0,
+                    tomorrow >= 0 ? mForecast.getMinTemp(tomorrow) : 0);
+            if (mRenderer.isAnimating() != wasAnimating) {
+                // Don't wait out a second-long frame before the new weather starts moving
+                requestAnimationBurst();
+                updateTimer();
             }
-            return rc;
         }
 
         /**
-         * Loading all versions (interactive, ambient and low bit) into a bitmap array. The correct
-         * version will be pluck out at runtime.
-         *
-         * @param arrayId Key to the type of bitmap that we are initialising. The full list can be
-         *                found in res/values/images_santa_watchface.xml
-         * @return Array of three bitmaps for interactive, ambient and low bit modes
+         * Lets the weather animation run smoothly for a moment, if there is one.
          */
-        private Bitmap[] loadBitmaps(int arrayId) {
-            int[] bitmapIds = getIntArray(arrayId);
-            Bitmap[] bitmaps = new Bitmap[bitmapIds.length];
-            for (int i = 0; i < bitmapIds.length; i++) {
-                Drawable backgroundDrawable = mResources.getDrawable(bitmapIds[i]);
-                bitmaps[i] = ((BitmapDrawable) backgroundDrawable).getBitmap();
-            }
-            return bitmaps;
-        }
-
-        public void animateBackgroundForWeatherCondition(int weatherId, Canvas canvas, float centerX, float centerY) {
-            // Based on weather code data found at:
-            // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-            if (weatherId >= 200 && weatherId <= 232) {
-                animateRain(canvas, centerX, centerY, 1); //storm
-            } else if (weatherId >= 300 && weatherId <= 321) {
-                animateRain(canvas, centerX, centerY, 0.2); //light_rain
-            } else if (weatherId >= 500 && weatherId <= 504) {
-                animateRain(canvas, centerX, centerY, 0.5); //rain
-            } else if (weatherId == 511) {
-                animateSnow(canvas, centerX, centerY, 0.5); //snow
-            } else if (weatherId >= 520 && weatherId <= 531) {
-                animateRain(canvas, centerX, centerY, 0.5); //rain
-            } else if (weatherId >= 600 && weatherId <= 622) {
-                animateSnow(canvas, centerX, centerY, 1); //snow
-            } else if (weatherId >= 701 && weatherId <= 761) {
-                animateFog(canvas, centerX, centerY);
-            } else if (weatherId == 761 || weatherId == 781) {
-                animateRain(canvas, centerX, centerY, 1); //storm
-            } else if (weatherId == 800) {
-                animateRain(canvas, centerX, centerY, 0); //clear
-            } else if (weatherId == 801) {
-                animateClouds(canvas, centerX, centerY, 0.5); //light clouds
-            } else if (weatherId >= 802 && weatherId <= 804) {
-                animateClouds(canvas, centerX, centerY, 1); //clouds
+        private void requestAnimationBurst() {
+            if (mRenderer.isAnimating()) {
+                mFrameRateGovernor.requestBurst(System.currentTimeMillis(), ANIMATION_BURST_MS);
             }
         }
 
-        public void animateClouds(Canvas canvas, float centerX, float centerY, double intensity) {
-            for (mLoop = 0; mLoop < (mCloudBitmaps.length * intensity); mLoop++) {
-                canvas.save();
-                canvas.rotate(mCloudDegrees[mLoop], centerX, centerY);
 
-                mRadius = centerX - (mTimeElapsed / (mCloudSpeeds[mLoop])) % centerX;
-                mCloudFilterPaints[mLoop].setAlpha((int) (mRadius / centerX * 255));
-
-                canvas.drawBitmap(mCloudBitmaps[mLoop], centerX, centerY - mRadius,
-                        mCloudFilterPaints[mLoop]);
-
-                canvas.restore();
+        @Override  // GoogleApiClient.ConnectionCallbacks
+        public void onConnected(Bundle connectionHint) {
+            if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
+                Log.d(LOG_TAG, "onConnected: " + connectionHint);
             }
-        }
-
-        public void animateRain(Canvas canvas, float centerX, float centerY, double intensity) {
-            for (mLoop = 0; mLoop < (mRainBitmaps.length * intensity); mLoop++) {
-                canvas.save();
-                canvas.translate(mRainDegrees[mLoop], 0);
-
-                mRadius = centerX - (mTimeElapsed / (mRainSpeeds[mLoop])) % centerX;
-                mRainFilterPaints[mLoop].setAlpha((int) (mRadius / centerX * 255));
-
-                canvas.drawBitmap(mRainBitmaps[mLoop], centerX, centerY - mRadius,
-                        mRainFilterPaints[mLoop]);
-
-                canvas.restore();
+            if (!mWeatherDataFetched) {
+                mWeatherDataFetched = true;
+                fetchWeatherDataItem();
             }
         }
 
-        public void animateSnow(Canvas canvas, float centerX, float centerY, double intensity) {
-            for (mLoop = 0; mLoop < (mSnowBitmaps.length * intensity); mLoop++) {
-                canvas.save();
-                canvas.translate(mSnowDegrees[mLoop], 0);
-
-                mRadius = centerX - (mTimeElapsed / (mSnowSpeeds[mLoop])) % centerX;
-                mSnowFilterPaints[mLoop].setAlpha((int) (mRadius / centerX * 255));
-
-                canvas.drawBitmap(mSnowBitmaps[mLoop], centerX, centerY - mRadius,
-                        mSnowFilterPaints[mLoop]);
+        /**
+         * Applies the phone's current weather data item, in case it arrived before the listener
+         * service could hear about it, e.g. before this app was installed.
+         */
+        private void fetchWeatherDataItem() {
+            // No authority: the item of whichever phone sent it
+            Uri uri = new Uri.Builder().scheme(PutDataRequest.WEAR_URI_SCHEME)
+                    .path(ForecastWire.PATH_WEATHER_DATA).build();
+            Wearable.DataApi.getDataItems(mGoogleApiClient, uri)
+                    .setResultCallback(new ResultCallback<DataItemBuffer>() {
+                        @Override
+                        public void onResult(DataItemBuffer items) {
+                            try {
+                                if (!items.getStatus().isSuccess()) {
+                                    // Try again on the next connection
+                                    mWeatherDataFetched = false;
+                                    return;
+                                }
+                                for (DataItem item : items) {
+                                    int result = mForecastStore.ingest(
+                                            DataMapItem.fromDataItem(item).getDataMap());
+                                    if (mForecastStore.needsAcknowledgement(result)) {
+                                        Wearable.DataApi.putDataItem(mGoogleApiClient,
+                                                mForecastStore.createAcknowledgement());
+                                    }
+                                }
+                            } finally {
+                                items.release();
+                            }
+                        }
+                    });
+        }
 
-                canvas.restore();
+        @Override  // GoogleApiClient.ConnectionCallbacks
+        public void onConnectionSuspended(int cause) {
+            if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
+                Log.d(LOG_TAG, "onConnectionSuspended: " + cause);
             }
         }
 
-        public void animateFog(Canvas canvas, float centerX, float centerY) {
-            for (mLoop = 0; mLoop < mCloudBitmaps.length; mLoop++) {
-                canvas.save();
-                canvas.translate(mRainDegrees[0], 0);
-
-                mRadius = centerX - (mTimeElapsed / (mCloudSpeeds[mLoop])) % centerX;
-                mCloudFilterPaints[0].setAlpha((int) (mRadius / centerX * 255));
-                canvas.scale(mRadius, mRadius);
-                canvas.drawBitmap(mCloudBitmaps[0], centerX, centerY - mRadius,
-                        mCloudFilterPaints[0]);
-
-                canvas.restore();
+        @Override  // GoogleApiClient.OnConnectionFailedListener
+        public void onConnectionFailed(ConnectionResult result) {
+            if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
+                Log.d(LOG_TAG, "onConnectionFailed: " + result);
             }
         }
     }
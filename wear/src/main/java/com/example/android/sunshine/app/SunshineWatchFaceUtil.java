@@ -50,7 +50,10 @@ public final class SunshineWatchFaceUtil {
      */
     public static final String PATH_WITH_FEATURE = "/watch_face_config/Digital";
 
-    public static final String PATH_WEATHER_DATA = "/weatherdata";
+    /**
+     * The path for the {@link DataItem} in which the watch exports its frame timing statistics.
+     */
+    public static final String PATH_FRAME_STATS = "/watchface_frame_stats";
 
     /**
      * Name of the default interactive mode background color and the ambient mode background color.
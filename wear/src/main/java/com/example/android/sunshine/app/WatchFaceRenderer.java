@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.AsyncTask;
+
+import com.example.android.sunshine.scene.DrawList;
+import com.example.android.sunshine.scene.WatchFaceScene;
+import com.example.android.sunshine.scene.WeatherEffects;
+
+/**
+ * Draws the Sunshine watch face.  What goes where is worked out by the platform-independent
+ * {@link WatchFaceScene}; this class replays its {@link DrawList} onto the canvas with paints,
+ * labels and bitmaps prepared ahead of time, so {@link #draw} doesn't allocate.  The weather
+ * sprites are packed into a {@link SpriteAtlas} for the surface size on a background thread; the
+ * animation starts once it is ready.
+ */
+final class WatchFaceRenderer {
+
+    private final Resources mResources;
+    private final WatchFaceScene mScene = new WatchFaceScene();
+    private final DrawList mDrawList = new DrawList(WatchFaceScene.MAX_COMMANDS);
+    // The background is a flat color, filled in straight onto the surface
+    private final int mBackgroundColor;
+    private final int mSunColor;
+    private final AmbientRenderer mAmbientRenderer;
+    private final Paint mHandPaint;
+    private final Paint mSpritePaint = new Paint();
+    private final RectF mSpriteDestination = new RectF();
+    private final String mTemperatureFormat;
+    private final int mBurnInShift;
+
+    // Indexed by the scene's TEXT_ constants
+    private final String[] mTexts = {"", "", ""};
+
+    private long mAnimationNanos;
+
+    // Guards handing a built atlas over from the loading thread
+    private final Object mAtlasLock = new Object();
+    // The atlas being drawn with; only changed on the drawing thread
+    private SpriteAtlas mAtlas;
+    // The newest atlas built, which the next frame switches to
+    private volatile SpriteAtlas mLoadedAtlas;
+    // The surface width the atlas is wanted for
+    private int mAtlasWidth = -1;
+    private boolean mReleased;
+
+    WatchFaceRenderer(Resources resources) {
+        mResources = resources;
+        mBackgroundColor = resources.getColor(R.color.background);
+        mSunColor = resources.getColor(R.color.sun);
+        mAmbientRenderer = new AmbientRenderer(resources);
+        mTemperatureFormat = resources.getString(R.string.format_temperature);
+        mBurnInShift = resources.getDimensionPixelSize(R.dimen.ambient_burn_in_shift);
+
+        mHandPaint = new Paint();
+        mHandPaint.setColor(resources.getColor(R.color.analog_hands));
+        mHandPaint.setStrokeWidth(resources.getDimension(R.dimen.analog_hand_stroke));
+        mHandPaint.setAntiAlias(true);
+        mHandPaint.setStrokeCap(Paint.Cap.ROUND);
+    }
+
+    /**
+     * Sets the weather to show and builds its labels.
+     *
+     * @param hasTomorrow whether the tomorrow temperatures are known.
+     */
+    void setWeather(int weatherId, double high, double low, boolean hasTomorrow,
+                    double tomorrowHigh, double tomorrowLow) {
+        mScene.setWeather(weatherId, hasTomorrow);
+        mTexts[WatchFaceScene.TEXT_MAX] = "T Max " + String.format(mTemperatureFormat, high);
+        mTexts[WatchFaceScene.TEXT_MIN] = "T Min " + String.format(mTemperatureFormat, low);
+        mTexts[WatchFaceScene.TEXT_TOMORROW] = hasTomorrow
+                ? "Next " + String.format(mTemperatureFormat, tomorrowHigh)
+                + "/" + String.format(mTemperatureFormat, tomorrowLow)
+                : "";
+    }
+
+    void setLowBitAmbient(boolean lowBitAmbient) {
+        mAmbientRenderer.setLowBitAmbient(lowBitAmbient);
+    }
+
+    void setBurnInProtection(boolean burnInProtection) {
+        mScene.setBurnInShift(burnInProtection ? mBurnInShift : 0);
+    }
+
+    /**
+     * @param detail the share of the full particle count to animate, 0..1.
+     */
+    void setDetail(float detail) {
+        mScene.setDetail(detail);
+    }
+
+    /**
+     * @return whether the interactive face has an animation running.
+     */
+    boolean isAnimating() {
+        return mScene.isAnimating();
+    }
+
+    void setAmbient(boolean ambient) {
+        mScene.setAmbient(ambient);
+    }
+
+    /**
+     * Draws one frame.
+     *
+     * @param hour   local hour, 0-23
+     * @param minute local minute, 0-59
+     * @param second local second, 0-59
+     * @param now    the current time in milliseconds, for the weather animation
+     */
+    void draw(Canvas canvas, int width, int height, int hour, int minute, int second, long now) {
+        updateAtlas(width);
+
+        long computeStart = System.nanoTime();
+        mScene.compute(mDrawList, width, height, hour, minute, second, now);
+        // Most of the scene's work is moving the particles
+        mAnimationNanos = mScene.getParticleCount() > 0 ? System.nanoTime() - computeStart : 0;
+
+        DrawList list = mDrawList;
+        int currentAlpha = -1;
+        long spritesStart = 0;
+        for (int i = 0, size = list.size(); i < size; i++) {
+            switch (list.getOp(i)) {
+                case DrawList.OP_BACKGROUND:
+                    canvas.drawColor(list.getArg(i) == WatchFaceScene.BACKGROUND_SUNNY
+                            ? mSunColor : mBackgroundColor);
+                    break;
+                case DrawList.OP_SPRITE: {
+                    if (spritesStart == 0) {
+                        spritesStart = System.nanoTime();
+                    }
+                    int alpha = list.getAlpha(i);
+                    if (alpha != currentAlpha) {
+                        mSpritePaint.setAlpha(alpha);
+                        currentAlpha = alpha;
+                    }
+                    Rect source = mAtlas.getRect(
+                            mAtlas.getGroup(mScene.getSpriteGroup())[list.getArg(i)]);
+                    // The atlas is already at the surface's scale, so this is a plain copy
+                    float x = list.getX0(i);
+                    float y = list.getY0(i);
+                    mSpriteDestination.set(x, y, x + source.width(), y + source.height());
+                    canvas.drawBitmap(mAtlas.getBitmap(), source, mSpriteDestination,
+                            mSpritePaint);
+                    if (i + 1 == size || list.getOp(i + 1) != DrawList.OP_SPRITE) {
+                        mAnimationNanos += System.nanoTime() - spritesStart;
+                    }
+                    break;
+                }
+                case DrawList.OP_LINE:
+                    canvas.drawLine(list.getX0(i), list.getY0(i), list.getX1(i), list.getY1(i),
+                            list.getArg(i) == WatchFaceScene.PAINT_AMBIENT_HAND
+                                    ? mAmbientRenderer.getHandPaint() : mHandPaint);
+                    break;
+                case DrawList.OP_TEXT:
+                    canvas.drawText(mTexts[list.getArg(i)], list.getX0(i), list.getY0(i),
+                            mHandPaint);
+                    break;
+                case DrawList.OP_DIAL:
+                    mAmbientRenderer.drawDial(canvas, width, height, (int) list.getX0(i),
+                            (int) list.getY0(i));
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return how long the weather animation took in the last frame, in nanoseconds.
+     */
+    long getAnimationNanos() {
+        return mAnimationNanos;
+    }
+
+    /**
+     * @return whether the sprite atlas for the surface has been built.
+     */
+    boolean hasSprites() {
+        return mLoadedAtlas != null;
+    }
+
+    void release() {
+        mAmbientRenderer.release();
+        synchronized (mAtlasLock) {
+            mReleased = true;
+            if (mLoadedAtlas != null && mLoadedAtlas != mAtlas) {
+                mLoadedAtlas.release();
+            }
+            if (mAtlas != null) {
+                mAtlas.release();
+            }
+            mLoadedAtlas = null;
+            setAtlas(null);
+        }
+    }
+
+    // Switches to a newly built atlas, and starts building one when the surface size changes
+    private void updateAtlas(int width) {
+        if (mLoadedAtlas != mAtlas) {
+            synchronized (mAtlasLock) {
+                if (mAtlas != null) {
+                    mAtlas.release();
+                }
+                setAtlas(mLoadedAtlas);
+            }
+        }
+        if (width != mAtlasWidth) {
+            synchronized (mAtlasLock) {
+                mAtlasWidth = width;
+            }
+            loadAtlas(width);
+        }
+    }
+
+    // The scene only emits sprites for the groups the atlas has
+    private void setAtlas(SpriteAtlas atlas) {
+        mAtlas = atlas;
+        for (int group = 0; group < WeatherEffects.GROUP_COUNT; group++) {
+            mScene.setSpriteCount(group, atlas != null ? atlas.getGroup(group).length : 0);
+        }
+    }
+
+    private void loadAtlas(final int width) {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                SpriteAtlas atlas = SpriteAtlas.build(mResources, width);
+                synchronized (mAtlasLock) {
+                    // Drop it if the surface changed size again, or the face went away
+                    if (mReleased || width != mAtlasWidth) {
+                        atlas.release();
+                        return;
+                    }
+                    if (mLoadedAtlas != null && mLoadedAtlas != mAtlas) {
+                        mLoadedAtlas.release();
+                    }
+                    mLoadedAtlas = atlas;
+                }
+            }
+        });
+    }
+}
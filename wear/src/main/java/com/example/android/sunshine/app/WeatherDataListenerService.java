@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.util.Log;
+
+import com.example.android.sunshine.core.ForecastWire;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.DataEvent;
+import com.google.android.gms.wearable.DataEventBuffer;
+import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataMapItem;
+import com.google.android.gms.wearable.Wearable;
+import com.google.android.gms.wearable.WearableListenerService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives the weather the phone sends whenever it arrives, screen on or off, and hands it to the
+ * {@link ForecastStore} on the listener's background thread.  The watch face then only has to
+ * copy the decoded forecast when it wakes up.
+ */
+public class WeatherDataListenerService extends WearableListenerService {
+
+    private static final String LOG_TAG = WeatherDataListenerService.class.getSimpleName();
+
+    private static final long CONNECT_TIMEOUT_SECONDS = 30;
+
+    @Override
+    public void onDataChanged(DataEventBuffer dataEvents) {
+        ForecastStore store = ForecastStore.get(this);
+        boolean acknowledge = false;
+        for (DataEvent dataEvent : dataEvents) {
+            if (dataEvent.getType() != DataEvent.TYPE_CHANGED) {
+                continue;
+            }
+            DataItem dataItem = dataEvent.getDataItem();
+            if (!ForecastWire.PATH_WEATHER_DATA.equals(dataItem.getUri().getPath())) {
+                continue;
+            }
+            int result = store.ingest(DataMapItem.fromDataItem(dataItem).getDataMap());
+            Log.d(LOG_TAG, "onDataChanged: result " + result);
+            acknowledge |= store.needsAcknowledgement(result);
+        }
+        if (acknowledge) {
+            acknowledge(store);
+        }
+    }
+
+    private void acknowledge(ForecastStore store) {
+        GoogleApiClient googleApiClient = new GoogleApiClient.Builder(this)
+                .addApi(Wearable.API)
+                .build();
+        ConnectionResult connectionResult =
+                googleApiClient.blockingConnect(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!connectionResult.isSuccess()) {
+            Log.e(LOG_TAG, "Failed to connect to GoogleApiClient: " + connectionResult);
+            return;
+        }
+        try {
+            Wearable.DataApi.putDataItem(googleApiClient, store.createAcknowledgement())
+                    .await(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } finally {
+            googleApiClient.disconnect();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import com.example.android.sunshine.core.ForecastWire;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * The forecast days the phone has sent, decoded straight from the {@link ForecastWire} payload
+ * built by the phone's ForecastPayload into preallocated arrays.  A payload may be relative to an
+ * earlier version; it can only be applied if that is the version held here.
+ */
+final class WeatherForecast {
+
+    // More than the phone ever sends
+    static final int MAX_DAYS = 14;
+
+    static final int RESULT_APPLIED = 0;
+    // The payload is relative to a version we don't have
+    static final int RESULT_NEED_FULL = 1;
+    static final int RESULT_MALFORMED = 2;
+    // The payload is the version already held, with the same days
+    static final int RESULT_CURRENT = 3;
+
+    private int mSequence;
+    private int mStartDay;
+    private int mCount;
+    private int[] mWeatherIds = new int[MAX_DAYS];
+    private int[] mMaxTemps = new int[MAX_DAYS];
+    private int[] mMinTemps = new int[MAX_DAYS];
+
+    // Decoding target, swapped in once a payload has been read completely
+    private int[] mNextWeatherIds = new int[MAX_DAYS];
+    private int[] mNextMaxTemps = new int[MAX_DAYS];
+    private int[] mNextMinTemps = new int[MAX_DAYS];
+
+    private byte[] mPayload;
+    private int mPosition;
+
+    /**
+     * Decodes a payload.  Nothing changes unless the result is {@link #RESULT_APPLIED}.  A payload
+     * only counts as {@link #RESULT_CURRENT} if its days match too, since the phone starts its
+     * sequence over when it loses its state, e.g. after its data is cleared.
+     */
+    int apply(byte[] payload) {
+        mPayload = payload;
+        mPosition = 0;
+        try {
+            if (payload == null || payload.length == 0
+                    || payload[0] != ForecastWire.FORMAT_VERSION) {
+                return RESULT_MALFORMED;
+            }
+            mPosition = 1;
+            int sequence = readVarint();
+            int baseSequence = readVarint();
+            int startDay = readVarint();
+            int count = readVarint();
+            if (sequence <= 0 || count < 0 || count > MAX_DAYS) {
+                return RESULT_MALFORMED;
+            }
+            boolean relative = baseSequence != 0;
+            if (relative && baseSequence != mSequence) {
+                return RESULT_NEED_FULL;
+            }
+            for (int i = 0; i < count; i++) {
+                int baseIndex = startDay + i - mStartDay;
+                boolean inBase = relative && baseIndex >= 0 && baseIndex < mCount;
+                mNextWeatherIds[i] = readSignedVarint() + (inBase ? mWeatherIds[baseIndex] : 0);
+                mNextMaxTemps[i] = readSignedVarint() + (inBase ? mMaxTemps[baseIndex] : 0);
+                mNextMinTemps[i] = readSignedVarint() + (inBase ? mMinTemps[baseIndex] : 0);
+            }
+            if (mPosition != payload.length) {
+                return RESULT_MALFORMED;
+            }
+            if (sequence == mSequence && holds(startDay, count)) {
+                return RESULT_CURRENT;
+            }
+
+            int[] swap = mWeatherIds;
+            mWeatherIds = mNextWeatherIds;
+            mNextWeatherIds = swap;
+            swap = mMaxTemps;
+            mMaxTemps = mNextMaxTemps;
+            mNextMaxTemps = swap;
+            swap = mMinTemps;
+            mMinTemps = mNextMinTemps;
+            mNextMinTemps = swap;
+            mSequence = sequence;
+            mStartDay = startDay;
+            mCount = count;
+            return RESULT_APPLIED;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            // Truncated
+            return RESULT_MALFORMED;
+        } finally {
+            mPayload = null;
+        }
+    }
+
+    // Whether the days just decoded are the ones already held
+    private boolean holds(int startDay, int count) {
+        if (startDay != mStartDay || count != mCount) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (mNextWeatherIds[i] != mWeatherIds[i] || mNextMaxTemps[i] != mMaxTemps[i]
+                    || mNextMinTemps[i] != mMinTemps[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int readVarint() {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = mPayload[mPosition++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new ArrayIndexOutOfBoundsException("varint too long");
+    }
+
+    private int readSignedVarint() {
+        return ForecastWire.zigZagDecode(readVarint());
+    }
+
+    /**
+     * Makes this a copy of {@code other}, without allocating.
+     */
+    void copyFrom(WeatherForecast other) {
+        mSequence = other.mSequence;
+        mStartDay = other.mStartDay;
+        mCount = other.mCount;
+        System.arraycopy(other.mWeatherIds, 0, mWeatherIds, 0, other.mCount);
+        System.arraycopy(other.mMaxTemps, 0, mMaxTemps, 0, other.mCount);
+        System.arraycopy(other.mMinTemps, 0, mMinTemps, 0, other.mCount);
+    }
+
+    /**
+     * Encodes what is held as an absolute payload, which {@link #apply} takes back as it is.
+     *
+     * @return the payload, or null if nothing has been applied yet.
+     */
+    byte[] toPayload() {
+        if (mSequence == 0) {
+            return null;
+        }
+        ByteArrayOutputStream out = ForecastWire.newPayloadStream(mCount);
+        ForecastWire.writeHeader(out, mSequence, 0, mStartDay, mCount);
+        for (int i = 0; i < mCount; i++) {
+            ForecastWire.writeDay(out, mWeatherIds[i], mMaxTemps[i], mMinTemps[i]);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the version last applied, or 0 if there is none.
+     */
+    int getSequence() {
+        return mSequence;
+    }
+
+    /**
+     * @return the index of the given Julian day, or -1 if the forecast doesn't cover it.
+     */
+    int getDayIndex(int julianDay) {
+        int index = julianDay - mStartDay;
+        return index >= 0 && index < mCount ? index : -1;
+    }
+
+    int getWeatherId(int index) {
+        return mWeatherIds[index];
+    }
+
+    float getMaxTemp(int index) {
+        return ForecastWire.fromTenths(mMaxTemps[index]);
+    }
+
+    float getMinTemp(int index) {
+        return ForecastWire.fromTenths(mMinTemps[index]);
+    }
+}